@@ -0,0 +1,33 @@
+package com.ecommerce.wishlist.benchmark;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.ecommerce.wishlist.resquest.ProductRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Wishlist wishlist(int size) {
+        var products = new ArrayList<Product>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product("product-" + i, "Product " + i, 1 + i % 5, LocalDateTime.now(), LocalDateTime.now()));
+        }
+        var wishlist = new Wishlist("user-" + size, LocalDateTime.now(), LocalDateTime.now(), products, null, null, null, 0L);
+        wishlist.setTotalQuantity(wishlist.calculateTotalQuantity());
+        return wishlist;
+    }
+
+    static List<ProductRequest> productRequests(int size) {
+        var requests = new ArrayList<ProductRequest>(size);
+        for (int i = 0; i < size; i++) {
+            requests.add(new ProductRequest("product-" + i, "Product " + i, 1 + i % 5));
+        }
+        return requests;
+    }
+}
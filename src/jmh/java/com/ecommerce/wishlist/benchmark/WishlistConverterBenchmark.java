@@ -0,0 +1,78 @@
+package com.ecommerce.wishlist.benchmark;
+
+import com.ecommerce.wishlist.converter.WishlistConverters;
+import com.ecommerce.wishlist.model.Wishlist;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WishlistConverterBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int size;
+
+    private MappingMongoConverter defaultConverter;
+
+    private MappingMongoConverter customConverter;
+
+    private Wishlist wishlist;
+
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        defaultConverter = converter(new MongoCustomConversions(List.of()));
+        customConverter = converter(new MongoCustomConversions(WishlistConverters.getConvertersToRegister()));
+        wishlist = BenchmarkData.wishlist(size);
+        document = new Document();
+        defaultConverter.write(wishlist, document);
+    }
+
+    @Benchmark
+    public Document writeDefault() {
+        var target = new Document();
+        defaultConverter.write(wishlist, target);
+        return target;
+    }
+
+    @Benchmark
+    public Document writeCustom() {
+        var target = new Document();
+        customConverter.write(wishlist, target);
+        return target;
+    }
+
+    @Benchmark
+    public Wishlist readDefault() {
+        return defaultConverter.read(Wishlist.class, document);
+    }
+
+    @Benchmark
+    public Wishlist readCustom() {
+        return customConverter.read(Wishlist.class, document);
+    }
+
+    private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+        var mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.setInitialEntitySet(Set.of(Wishlist.class));
+        mappingContext.afterPropertiesSet();
+        var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
@@ -0,0 +1,61 @@
+package com.ecommerce.wishlist.benchmark;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.ecommerce.wishlist.response.WishlistResponse;
+import com.ecommerce.wishlist.resquest.ProductRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WishlistMappingBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int size;
+
+    private Wishlist wishlist;
+
+    private List<ProductRequest> productRequests;
+
+    private String lastProductId;
+
+    @Setup
+    public void setUp() {
+        wishlist = BenchmarkData.wishlist(size);
+        productRequests = BenchmarkData.productRequests(size);
+        lastProductId = "product-" + (size - 1);
+    }
+
+    @Benchmark
+    public WishlistResponse fromWishlist() {
+        return WishlistResponse.fromWishlist(wishlist);
+    }
+
+    @Benchmark
+    public void productFromRequest(Blackhole blackhole) {
+        for (var productRequest : productRequests) {
+            blackhole.consume(Product.fromRequest(productRequest));
+        }
+    }
+
+    @Benchmark
+    public int calculateTotalQuantity() {
+        return wishlist.calculateTotalQuantity();
+    }
+
+    @Benchmark
+    public Product linearProductLookup() {
+        return wishlist.getProducts().stream()
+                .filter(p -> p.getProductId().equals(lastProductId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,39 @@
+package com.ecommerce.wishlist.benchmark;
+
+import com.ecommerce.wishlist.response.WishlistResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WishlistSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int size;
+
+    private ObjectMapper mapper;
+
+    private WishlistResponse wishlistResponse;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        wishlistResponse = WishlistResponse.fromWishlist(BenchmarkData.wishlist(size));
+    }
+
+    @Benchmark
+    public byte[] serializeWishlistResponse() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(wishlistResponse);
+    }
+}
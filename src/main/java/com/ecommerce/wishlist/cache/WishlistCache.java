@@ -0,0 +1,79 @@
+package com.ecommerce.wishlist.cache;
+
+import com.ecommerce.wishlist.model.Wishlist;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded in-process cache of wishlists keyed by userId. Entries are only replaced by a wishlist with the same
+ * or a higher {@code @Version}, so a slow reader can't overwrite the result of a newer write. Cached instances
+ * are shared and must not be mutated.
+ */
+@Component
+public class WishlistCache implements MeterBinder {
+
+    private final Cache<String, Wishlist> cache;
+
+    @Autowired
+    public WishlistCache(@Value("${wishlist.cache.max.size:10000}") long maxSize,
+                         @Value("${wishlist.cache.ttl.seconds:60}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Wishlist> get(String userId) {
+        return Optional.ofNullable(cache.getIfPresent(userId));
+    }
+
+    public void put(Wishlist wishlist) {
+        cache.asMap().merge(wishlist.getUserId(), wishlist, (cached, fresh) -> isNewer(fresh, cached) ? fresh : cached);
+    }
+
+    /**
+     * Replaces the cached wishlist if one is present and older, without populating the cache for cold keys.
+     */
+    public void refresh(Wishlist wishlist) {
+        cache.asMap().computeIfPresent(wishlist.getUserId(), (userId, cached) -> isNewer(wishlist, cached) ? wishlist : cached);
+    }
+
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "wishlist");
+    }
+
+    private static boolean isNewer(Wishlist fresh, Wishlist cached) {
+        if (fresh.getVersion() == null || cached.getVersion() == null) {
+            return true;
+        }
+        return fresh.getVersion() >= cached.getVersion();
+    }
+}
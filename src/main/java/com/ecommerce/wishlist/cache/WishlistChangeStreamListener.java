@@ -0,0 +1,200 @@
+package com.ecommerce.wishlist.cache;
+
+import com.ecommerce.wishlist.model.Wishlist;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local {@link WishlistCache} and {@link WishlistJsonCache} coherent with writes made by other instances
+ * by tailing the change stream of the wishlist collection. The resume token is persisted per instance so invalidations that happen while the
+ * instance is down are replayed on restart.
+ */
+@Component
+@ConditionalOnProperty(name = "wishlist.cache.change.stream.enabled", havingValue = "true")
+public class WishlistChangeStreamListener implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistChangeStreamListener.class);
+
+    static final String RESUME_TOKEN_COLLECTION = "changeStreamResumeToken";
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final WishlistCache wishlistCache;
+
+    private final WishlistJsonCache wishlistJsonCache;
+
+    private final String instanceId;
+
+    private final long tokenFlushIntervalMillis;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    private BsonDocument pendingToken;
+
+    private long lastTokenFlush;
+
+    @Autowired
+    public WishlistChangeStreamListener(MongoTemplate mongoTemplate,
+                                        WishlistCache wishlistCache,
+                                        WishlistJsonCache wishlistJsonCache,
+                                        @Value("${wishlist.cache.change.stream.instance:${HOSTNAME:local}}") String instanceId,
+                                        @Value("${wishlist.cache.change.stream.token.flush.ms:1000}") long tokenFlushIntervalMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.wishlistCache = wishlistCache;
+        this.wishlistJsonCache = wishlistJsonCache;
+        this.instanceId = instanceId;
+        this.tokenFlushIntervalMillis = tokenFlushIntervalMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::listen, "wishlist-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                watch(loadResumeToken());
+            } catch (MongoCommandException ex) {
+                if (ex.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    log.warn("Change stream history lost for instance {}, dropping resume token and local cache", instanceId);
+                    wishlistCache.invalidateAll();
+                    wishlistJsonCache.invalidateAll();
+                    deleteResumeToken();
+                } else {
+                    log.error("Change stream on wishlist collection failed, retrying", ex);
+                    pause();
+                }
+            } catch (RuntimeException ex) {
+                if (running) {
+                    log.error("Change stream on wishlist collection failed, retrying", ex);
+                    pause();
+                }
+            }
+        }
+        flushResumeToken();
+    }
+
+    private void watch(BsonDocument resumeToken) {
+        var stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Wishlist.class))
+                .watch(List.of(new Document("$match", new Document("operationType",
+                        new Document("$in", List.of("insert", "update", "replace", "delete"))))))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream.resumeAfter(resumeToken);
+        }
+
+        try (var cursor = stream.cursor()) {
+            while (running) {
+                var event = cursor.tryNext();
+                if (event != null) {
+                    apply(event);
+                    pendingToken = event.getResumeToken();
+                } else if (cursor.getResumeToken() != null) {
+                    pendingToken = cursor.getResumeToken();
+                }
+                if (System.currentTimeMillis() - lastTokenFlush >= tokenFlushIntervalMillis) {
+                    flushResumeToken();
+                }
+            }
+        }
+    }
+
+    void apply(ChangeStreamDocument<Document> event) {
+        if (event.getDocumentKey() == null) {
+            return;
+        }
+        var userId = event.getDocumentKey().getString("_id").getValue();
+
+        if (event.getOperationType() != OperationType.UPDATE) {
+            // JSON is cached by version, which starts over when a wishlist is deleted and created again.
+            wishlistJsonCache.invalidate(userId);
+        }
+        if (event.getOperationType() == OperationType.DELETE || event.getFullDocument() == null) {
+            wishlistCache.invalidate(userId);
+        } else {
+            wishlistCache.refresh(mongoTemplate.getConverter().read(Wishlist.class, event.getFullDocument()));
+        }
+    }
+
+    private BsonDocument loadResumeToken() {
+        var stored = resumeTokens().find(Filters.eq("_id", instanceId)).first();
+        return stored == null ? null : stored.getDocument("token", null);
+    }
+
+    private void flushResumeToken() {
+        if (pendingToken != null) {
+            saveResumeToken(pendingToken);
+            pendingToken = null;
+        }
+        lastTokenFlush = System.currentTimeMillis();
+    }
+
+    private void saveResumeToken(BsonDocument token) {
+        resumeTokens().replaceOne(
+                Filters.eq("_id", instanceId),
+                new BsonDocument("_id", new BsonString(instanceId)).append("token", token),
+                new ReplaceOptions().upsert(true));
+    }
+
+    private void deleteResumeToken() {
+        resumeTokens().deleteOne(Filters.eq("_id", instanceId));
+    }
+
+    private MongoCollection<BsonDocument> resumeTokens() {
+        return mongoTemplate.getDb().getCollection(RESUME_TOKEN_COLLECTION, BsonDocument.class);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ecommerce.wishlist.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cache of serialized wishlist JSON keyed by userId and {@code @Version}, stored off-heap in direct
+ * {@link ByteBuffer} slabs. Entries are appended to the current slab; once the memory budget is used up the
+ * oldest slab is recycled and every entry in it is evicted. An entry is only served for the exact version it was
+ * written with, so a newer write makes the old bytes unreachable without an explicit invalidation. Only a wishlist
+ * deleted and created again, whose version starts over, has to be invalidated.
+ * <p>
+ * Hits are copied to a per-thread scratch buffer so the client is written to outside the lock. The scratch buffer
+ * grows up to {@code MAX_SCRATCH_BYTES}; larger entries get a buffer of their own that is not kept.
+ */
+@Component
+public class WishlistJsonCache implements MeterBinder {
+
+    private static final int MAX_SCRATCH_BYTES = 64 * 1024;
+
+    private final int slabBytes;
+
+    private final ByteBuffer[] slabs;
+
+    private final List<List<String>> slabKeys;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private int currentSlab = -1;
+
+    @Autowired
+    public WishlistJsonCache(@Value("${wishlist.json.cache.enabled:false}") boolean enabled,
+                             @Value("${wishlist.json.cache.max.bytes:67108864}") long maxBytes,
+                             @Value("${wishlist.json.cache.slab.bytes:4194304}") int slabBytes) {
+        this.slabBytes = slabBytes;
+        int slabCount = enabled ? (int) Math.max(1, maxBytes / slabBytes) : 0;
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabKeys = new ArrayList<>(slabCount);
+        for (int i = 0; i < slabCount; i++) {
+            slabKeys.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Writes the cached JSON of the given version to the output stream. Returns false, writing nothing, when the
+     * version is not cached.
+     */
+    public boolean writeTo(String userId, long version, OutputStream outputStream) throws IOException {
+        byte[] buffer;
+        int length;
+        lock.readLock().lock();
+        try {
+            var entry = entries.get(userId);
+            if (entry == null || entry.version() != version) {
+                misses.incrementAndGet();
+                return false;
+            }
+            length = entry.length();
+            buffer = scratch.get();
+            if (length > MAX_SCRATCH_BYTES) {
+                buffer = new byte[length];
+            } else if (buffer.length < length) {
+                buffer = new byte[Math.min(Math.max(length, buffer.length * 2), MAX_SCRATCH_BYTES)];
+                scratch.set(buffer);
+            }
+            slabs[entry.slab()].get(entry.offset(), buffer, 0, length);
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.incrementAndGet();
+        outputStream.write(buffer, 0, length);
+        return true;
+    }
+
+    public void put(String userId, long version, byte[] json) {
+        if (slabs.length == 0 || json.length > slabBytes) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            var cached = entries.get(userId);
+            if (cached != null && cached.version() >= version) {
+                return;
+            }
+            if (currentSlab < 0 || slabs[currentSlab].remaining() < json.length) {
+                nextSlab();
+            }
+            var slab = slabs[currentSlab];
+            int offset = slab.position();
+            slab.put(json);
+            entries.put(userId, new Entry(version, currentSlab, offset, json.length));
+            slabKeys.get(currentSlab).add(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate(String userId) {
+        lock.writeLock().lock();
+        try {
+            entries.remove(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            slabKeys.forEach(List::clear);
+            for (var slab : slabs) {
+                if (slab != null) {
+                    slab.clear();
+                }
+            }
+            currentSlab = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return slabs.length > 0;
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            long used = 0;
+            for (var slab : slabs) {
+                if (slab != null) {
+                    used += slab.position();
+                }
+            }
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("wishlist.json.cache.gets", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("wishlist.json.cache.gets", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("wishlist.json.cache.evictions", evictions, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("wishlist.json.cache.size", this, WishlistJsonCache::size)
+                .register(registry);
+        Gauge.builder("wishlist.json.cache.used", this, WishlistJsonCache::usedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void nextSlab() {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        if (slabs[currentSlab] == null) {
+            slabs[currentSlab] = ByteBuffer.allocateDirect(slabBytes);
+            return;
+        }
+        var keys = slabKeys.get(currentSlab);
+        for (var userId : keys) {
+            var entry = entries.get(userId);
+            if (entry != null && entry.slab() == currentSlab) {
+                entries.remove(userId);
+                evictions.incrementAndGet();
+            }
+        }
+        keys.clear();
+        slabs[currentSlab].clear();
+    }
+
+    private record Entry(long version, int slab, int offset, int length) {
+    }
+}
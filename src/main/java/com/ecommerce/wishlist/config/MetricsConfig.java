@@ -0,0 +1,27 @@
+package com.ecommerce.wishlist.config;
+
+import com.ecommerce.wishlist.metrics.MongoCommandMetricsListener;
+import com.ecommerce.wishlist.metrics.SlowCommandListener;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandMetricsCustomizer(MeterRegistry registry, SlowCommandListener slowCommandListener,
+                                                                              @Value("${wishlist.mongo.metrics.size.sample.rate:100}") int sizeSampleRate) {
+        return builder -> builder
+                .addCommandListener(new MongoCommandMetricsListener(registry, sizeSampleRate))
+                .addCommandListener(slowCommandListener);
+    }
+}
@@ -1,9 +1,17 @@
 package com.ecommerce.wishlist.config;
 
+import com.ecommerce.wishlist.converter.WishlistConverters;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 
 @Configuration
 @EnableMongoAuditing
 public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(WishlistConverters.getConvertersToRegister());
+    }
 }
@@ -6,10 +6,14 @@ import com.ecommerce.wishlist.response.ApiErrorResponse;
 import com.ecommerce.wishlist.response.ValidationErrorResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.method.ParameterErrors;
+import org.springframework.validation.method.ParameterValidationResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -35,4 +39,29 @@ public class GlobalControllerExceptionHandler {
 
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    @ResponseBody
+    public ResponseEntity<ValidationErrorResponse> handleMethodValidationExceptions(HandlerMethodValidationException ex) {
+
+        List<String> errors = ex.getAllValidationResults().stream()
+                .flatMap(result -> result.getResolvableErrors().stream().map(error -> errorPath(result, error.getDefaultMessage(),
+                        error instanceof FieldError fieldError ? fieldError.getField() : null)))
+                .collect(Collectors.toList());
+
+        var errorResponse = new ValidationErrorResponse(ApiError.VALIDATION_ERROR, errors);
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    private static String errorPath(ParameterValidationResult result, String message, String field) {
+        var path = new StringBuilder(String.valueOf(result.getMethodParameter().getParameterName()));
+        if (result instanceof ParameterErrors parameterErrors && parameterErrors.getContainerIndex() != null) {
+            path.append('[').append(parameterErrors.getContainerIndex()).append(']');
+        }
+        if (field != null) {
+            path.append('.').append(field);
+        }
+        return path.append(": ").append(message).toString();
+    }
 }
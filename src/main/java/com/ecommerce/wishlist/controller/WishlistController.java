@@ -1,20 +1,43 @@
 package com.ecommerce.wishlist.controller;
 
 import com.ecommerce.wishlist.exception.AlreadyExistsException;
+import com.ecommerce.wishlist.exception.ExportInProgressException;
+import com.ecommerce.wishlist.exception.InvalidRequestException;
 import com.ecommerce.wishlist.exception.MaxItemsException;
 import com.ecommerce.wishlist.exception.NotFoundException;
 import com.ecommerce.wishlist.response.ProductResponse;
+import com.ecommerce.wishlist.response.ProductsContainsResponse;
+import com.ecommerce.wishlist.response.WishlistChangesResponse;
+import com.ecommerce.wishlist.response.WishlistExportResponse;
+import com.ecommerce.wishlist.response.WishlistImportResponse;
 import com.ecommerce.wishlist.response.WishlistResponse;
+import com.ecommerce.wishlist.resquest.ProductQuantityRequest;
 import com.ecommerce.wishlist.resquest.ProductRequest;
+import com.ecommerce.wishlist.resquest.ProductsContainsRequest;
 import com.ecommerce.wishlist.resquest.WishlistRequest;
+import com.ecommerce.wishlist.resquest.WishlistsRequest;
+import com.ecommerce.wishlist.service.WishlistBulkService;
+import com.ecommerce.wishlist.service.WishlistExportService;
+import com.ecommerce.wishlist.service.WishlistImportService;
 import com.ecommerce.wishlist.service.WishlistService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/wishlist")
@@ -22,9 +45,24 @@ public class WishlistController {
 
     private final WishlistService wishlistService;
 
+    private final WishlistBulkService wishlistBulkService;
+
+    private final WishlistImportService wishlistImportService;
+
+    private final WishlistExportService wishlistExportService;
+
+    private final boolean writeJsonEnabled;
+
     @Autowired
-    public WishlistController(WishlistService wishlistService) {
+    public WishlistController(WishlistService wishlistService, WishlistBulkService wishlistBulkService,
+                              WishlistImportService wishlistImportService, WishlistExportService wishlistExportService,
+                              @Value("${wishlist.get.raw.json.enabled:false}") boolean rawJsonEnabled,
+                              @Value("${wishlist.json.cache.enabled:false}") boolean jsonCacheEnabled) {
         this.wishlistService = wishlistService;
+        this.wishlistBulkService = wishlistBulkService;
+        this.wishlistImportService = wishlistImportService;
+        this.wishlistExportService = wishlistExportService;
+        this.writeJsonEnabled = rawJsonEnabled || jsonCacheEnabled;
     }
 
     @PostMapping
@@ -39,15 +77,81 @@ public class WishlistController {
         return wishlistService.create(wishlistRequest);
     }
 
-    @GetMapping("/{userId}")
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
     @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Import NDJSON wishlists, one create request per line, writing rejected lines to a reject file",
+            description = "The import runs while the request body is uploaded and answers once it is finished.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, with the number of imported and rejected wishlists and the reject file relative to the reject directory")
+    })
+    public WishlistImportResponse importWishlists(InputStream inputStream) throws IOException {
+        return wishlistImportService.importWishlists(inputStream);
+    }
+
+    @PostMapping("/export")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Start exporting all wishlists to gzip NDJSON files in the background, resuming the last export if it did not finish")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Export started, its progress is at /api/wishlist/export/status"),
+            @ApiResponse(responseCode = "409", description = "An export is already running")
+    })
+    public WishlistExportResponse exportWishlists() throws ExportInProgressException {
+        return wishlistExportService.start();
+    }
+
+    @GetMapping("/export/status")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get the progress of the running export, or the result of the last one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export status, with the files relative to the export directory"),
+            @ApiResponse(responseCode = "404", description = "No export was started")
+    })
+    public WishlistExportResponse getExportStatus() throws NotFoundException {
+        return wishlistExportService.getStatus();
+    }
+
+    @PostMapping(value = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Get the wishlists of many users as NDJSON, with a NOT_FOUND line for each missing one")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Get wishlists with success"),
+            @ApiResponse(responseCode = "400", description = "Invalid user ids")
+    })
+    public void getWishlistsByUserIds(@Valid @RequestBody WishlistsRequest wishlistsRequest, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        wishlistBulkService.writeByUserIds(wishlistsRequest.getUserIds(), response.getOutputStream());
+    }
+
+    @GetMapping("/{userId}")
     @Operation(summary = "Get the user's wishlist")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Get wishlist with success"),
+            @ApiResponse(responseCode = "304", description = "Wishlist not modified since the version in If-None-Match"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public WishlistResponse getWishlistByUserId(@PathVariable String userId, ServletWebRequest webRequest, HttpServletResponse response) throws NotFoundException, IOException {
+        // Only conditional requests look the version up first, the others take the ETag of the wishlist they get.
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null && webRequest.checkNotModified(wishlistService.getETag(userId))) {
+            return null;
+        }
+        if (writeJsonEnabled) {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            wishlistService.writeByUserId(userId, eTag -> response.setHeader(HttpHeaders.ETAG, eTag), response.getOutputStream());
+            return null;
+        }
+        return wishlistService.getByUserId(userId, eTag -> response.setHeader(HttpHeaders.ETAG, eTag));
+    }
+
+    @GetMapping("/{userId}/changes")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Get the products added, updated or removed since a version or a point in time",
+            description = "Pass the next cursor of the previous response as since. A bare version or date-time must also come from a previous response.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes since the given point, or a full snapshot when the history no longer covers it"),
+            @ApiResponse(responseCode = "400", description = "Invalid since"),
             @ApiResponse(responseCode = "404", description = "User not found")
     })
-    public WishlistResponse getWishlistByUserId(@PathVariable String userId) throws NotFoundException {
-        return wishlistService.getByUserId(userId);
+    public WishlistChangesResponse getWishlistChanges(@PathVariable String userId, @RequestParam String since) throws NotFoundException, InvalidRequestException {
+        return wishlistService.getChanges(userId, since);
     }
 
     @GetMapping("/{userId}/products/{productId}")
@@ -61,6 +165,18 @@ public class WishlistController {
         return wishlistService.isProductInWishlist(userId, productId);
     }
 
+    @PostMapping("/{userId}/products/contains")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Checks which of the given items are in the list")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Membership of each item, in request order"),
+            @ApiResponse(responseCode = "400", description = "Empty or too many product ids"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public ProductsContainsResponse containsProducts(@PathVariable String userId, @Valid @RequestBody ProductsContainsRequest productsContainsRequest) throws NotFoundException {
+        return wishlistService.containsProducts(userId, productsContainsRequest.getProductIds());
+    }
+
     @DeleteMapping("/{userId}/products/{productId}")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "Remove product to wishlist")
@@ -72,6 +188,31 @@ public class WishlistController {
         wishlistService.removeProduct(userId, productId);
     }
 
+    @PatchMapping("/{userId}/products/{productId}")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Set the quantity of a product in the wishlist, or change it by a signed delta. Zero removes the product")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Quantity updated"),
+            @ApiResponse(responseCode = "400", description = "Neither or both of quantity and delta set"),
+            @ApiResponse(responseCode = "404", description = "User or item not found"),
+            @ApiResponse(responseCode = "422", description = "Maximum number of items in the wishlist")
+    })
+    public WishlistResponse updateProductQuantity(@PathVariable String userId, @PathVariable String productId,
+                                                  @Valid @RequestBody ProductQuantityRequest productQuantityRequest) throws MaxItemsException, NotFoundException {
+        return wishlistService.updateProductQuantity(userId, productId, productQuantityRequest);
+    }
+
+    @DeleteMapping("/{userId}/products")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Remove all products from wishlist")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully cleared user's wish list"),
+            @ApiResponse(responseCode = "404", description = "User not found")
+    })
+    public void clearProducts(@PathVariable String userId) throws NotFoundException {
+        wishlistService.clearProducts(userId);
+    }
+
     @PostMapping("/{userId}/products")
     @ResponseStatus(HttpStatus.OK)
     @Operation(summary = "Add product to wish list")
@@ -83,4 +224,21 @@ public class WishlistController {
     public WishlistResponse addProductToWishlist(@PathVariable String userId, @Valid @RequestBody ProductRequest productRequest) throws MaxItemsException, NotFoundException {
         return wishlistService.addProduct(userId, productRequest);
     }
+
+    @PostMapping("/{userId}/products:batch")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Add several products to wish list in a single update")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully add all products to user's wish list"),
+            @ApiResponse(responseCode = "400", description = "Empty, too many or invalid products"),
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "422", description = "Maximum number of items in the wishlist"),
+    })
+    public WishlistResponse addProductsToWishlist(@PathVariable String userId,
+                                                  @RequestBody
+                                                  @NotEmpty(message = "Products cannot be empty")
+                                                  @Size(max = ProductRequest.MAX_BATCH_SIZE, message = "Products cannot exceed " + ProductRequest.MAX_BATCH_SIZE + " items")
+                                                  List<@Valid ProductRequest> productRequests) throws MaxItemsException, NotFoundException {
+        return wishlistService.addProducts(userId, productRequests);
+    }
 }
@@ -0,0 +1,154 @@
+package com.ecommerce.wishlist.converter;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.RemovedProduct;
+import com.ecommerce.wishlist.model.Wishlist;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Explicit converters for {@link Wishlist} and {@link Product} that read and write fields directly instead of going
+ * through the reflective mapping. They keep the shape written by the default mapping: {@code userId} as {@code _id},
+ * dates stored as BSON dates in the system time zone, null fields omitted and the {@code _class} hint on the root.
+ */
+public final class WishlistConverters {
+
+    static final String TYPE_KEY = "_class";
+
+    private WishlistConverters() {
+    }
+
+    public static List<Converter<?, ?>> getConvertersToRegister() {
+        return List.of(
+                WishlistWritingConverter.INSTANCE,
+                WishlistReadingConverter.INSTANCE,
+                ProductWritingConverter.INSTANCE,
+                ProductReadingConverter.INSTANCE
+        );
+    }
+
+    @WritingConverter
+    public enum WishlistWritingConverter implements Converter<Wishlist, Document> {
+        INSTANCE;
+
+        @Override
+        public Document convert(Wishlist source) {
+            var document = new Document();
+            putIfNotNull(document, "_id", source.getUserId());
+            putIfNotNull(document, "createdAt", toDate(source.getCreatedAt()));
+            putIfNotNull(document, "updatedAt", toDate(source.getUpdatedAt()));
+            if (source.getProducts() != null) {
+                var products = new ArrayList<Document>(source.getProducts().size());
+                for (var product : source.getProducts()) {
+                    products.add(ProductWritingConverter.INSTANCE.convert(product));
+                }
+                document.put("products", products);
+            }
+            putIfNotNull(document, "totalQuantity", source.getTotalQuantity());
+            if (source.getRemovedProducts() != null) {
+                var removedProducts = new ArrayList<Document>(source.getRemovedProducts().size());
+                for (var removedProduct : source.getRemovedProducts()) {
+                    var removed = new Document();
+                    putIfNotNull(removed, "productId", removedProduct.getProductId());
+                    putIfNotNull(removed, "removedAt", toDate(removedProduct.getRemovedAt()));
+                    removedProducts.add(removed);
+                }
+                document.put("removedProducts", removedProducts);
+            }
+            putIfNotNull(document, "removedProductsTrimmedAt", toDate(source.getRemovedProductsTrimmedAt()));
+            putIfNotNull(document, "version", source.getVersion());
+            document.put(TYPE_KEY, Wishlist.class.getName());
+            return document;
+        }
+    }
+
+    @ReadingConverter
+    public enum WishlistReadingConverter implements Converter<Document, Wishlist> {
+        INSTANCE;
+
+        @Override
+        public Wishlist convert(Document source) {
+            var wishlist = new Wishlist();
+            wishlist.setUserId(source.getString("_id"));
+            wishlist.setCreatedAt(toLocalDateTime(source.getDate("createdAt")));
+            wishlist.setUpdatedAt(toLocalDateTime(source.getDate("updatedAt")));
+            var products = source.getList("products", Document.class);
+            if (products != null) {
+                var converted = new ArrayList<Product>(products.size());
+                for (var product : products) {
+                    converted.add(ProductReadingConverter.INSTANCE.convert(product));
+                }
+                wishlist.setProducts(converted);
+            }
+            var totalQuantity = source.get("totalQuantity", Number.class);
+            wishlist.setTotalQuantity(totalQuantity == null ? null : totalQuantity.intValue());
+            var removedProducts = source.getList("removedProducts", Document.class);
+            if (removedProducts != null) {
+                var converted = new ArrayList<RemovedProduct>(removedProducts.size());
+                for (var removed : removedProducts) {
+                    converted.add(new RemovedProduct(removed.getString("productId"), toLocalDateTime(removed.getDate("removedAt"))));
+                }
+                wishlist.setRemovedProducts(converted);
+            }
+            wishlist.setRemovedProductsTrimmedAt(toLocalDateTime(source.getDate("removedProductsTrimmedAt")));
+            var version = source.get("version", Number.class);
+            wishlist.setVersion(version == null ? null : version.longValue());
+            return wishlist;
+        }
+    }
+
+    @WritingConverter
+    public enum ProductWritingConverter implements Converter<Product, Document> {
+        INSTANCE;
+
+        @Override
+        public Document convert(Product source) {
+            var document = new Document();
+            putIfNotNull(document, "productId", source.getProductId());
+            putIfNotNull(document, "productName", source.getProductName());
+            putIfNotNull(document, "quantity", source.getQuantity());
+            putIfNotNull(document, "createdAt", toDate(source.getCreatedAt()));
+            putIfNotNull(document, "updatedAt", toDate(source.getUpdatedAt()));
+            return document;
+        }
+    }
+
+    @ReadingConverter
+    public enum ProductReadingConverter implements Converter<Document, Product> {
+        INSTANCE;
+
+        @Override
+        public Product convert(Document source) {
+            var quantity = source.get("quantity", Number.class);
+            return new Product(
+                    source.getString("productId"),
+                    source.getString("productName"),
+                    quantity == null ? null : quantity.intValue(),
+                    toLocalDateTime(source.getDate("createdAt")),
+                    toLocalDateTime(source.getDate("updatedAt"))
+            );
+        }
+    }
+
+    private static void putIfNotNull(Document document, String key, Object value) {
+        if (value != null) {
+            document.put(key, value);
+        }
+    }
+
+    private static Date toDate(LocalDateTime value) {
+        return value == null ? null : Date.from(value.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDateTime toLocalDateTime(Date value) {
+        return value == null ? null : LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -4,5 +4,7 @@ public enum ApiError {
     NOT_FOUND,
     MAX_ITEMS,
     WISHLIST_ALREADY_EXISTS,
-    VALIDATION_ERROR
+    VALIDATION_ERROR,
+    EXPORT_IN_PROGRESS,
+    INCOMPLETE_RESPONSE
 }
@@ -0,0 +1,25 @@
+package com.ecommerce.wishlist.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ExportInProgressException extends ApiException {
+
+    public ExportInProgressException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus httpStatus() {
+        return HttpStatus.CONFLICT;
+    }
+
+    @Override
+    ApiError apiError() {
+        return ApiError.EXPORT_IN_PROGRESS;
+    }
+
+    @Override
+    String userResponseMessage() {
+        return getMessage();
+    }
+}
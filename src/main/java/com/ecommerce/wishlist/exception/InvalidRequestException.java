@@ -0,0 +1,25 @@
+package com.ecommerce.wishlist.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidRequestException extends ApiException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpStatus httpStatus() {
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    @Override
+    ApiError apiError() {
+        return ApiError.VALIDATION_ERROR;
+    }
+
+    @Override
+    String userResponseMessage() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,103 @@
+package com.ecommerce.wishlist.index;
+
+import com.ecommerce.wishlist.model.Wishlist;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared on {@link Wishlist} that are missing from the collection once the application is
+ * ready, and reports indexes that are not declared or that have not served any operation since the server started.
+ * Auto index creation stays disabled so index builds happen in one place and are visible in the logs.
+ */
+@Component
+@ConditionalOnProperty(value = "wishlist.index.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class WishlistIndexReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistIndexReconciler.class);
+
+    private static final String ID_INDEX = "_id_";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public WishlistIndexReconciler(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            var result = reconcile();
+            log.info("Wishlist indexes reconciled: created={}, unexpected={}, unused={}",
+                    result.created(), result.unexpected(), result.unused());
+        } catch (DataAccessException ex) {
+            log.error("Could not reconcile wishlist indexes", ex);
+        }
+    }
+
+    public Result reconcile() {
+        var indexOperations = mongoTemplate.indexOps(Wishlist.class);
+        var existing = indexOperations.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+
+        var declared = new ArrayList<String>();
+        var created = new ArrayList<String>();
+        var resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (var holder : resolver.resolveIndexFor(TypeInformation.of(Wishlist.class))) {
+            var name = holder.getIndexOptions().getString("name");
+            declared.add(name);
+            if (!existing.contains(name)) {
+                log.info("Creating wishlist index {} on {}", name, holder.getIndexKeys().toJson());
+                indexOperations.ensureIndex(holder);
+                created.add(name);
+            }
+        }
+
+        var unexpected = existing.stream()
+                .filter(name -> !name.equals(ID_INDEX) && !declared.contains(name))
+                .sorted()
+                .toList();
+        unexpected.forEach(name -> log.warn("Wishlist index {} is not declared on the model", name));
+
+        var unused = unusedIndexes(Set.copyOf(created));
+        unused.forEach(name -> log.warn("Wishlist index {} has not been used since the server started", name));
+
+        return new Result(created, unexpected, unused);
+    }
+
+    private List<String> unusedIndexes(Set<String> justCreated) {
+        var pipeline = List.of(new Document("$indexStats", new Document()));
+        var unused = new ArrayList<String>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Wishlist.class))
+                .aggregate(pipeline)
+                .forEach(stats -> {
+                    var name = stats.getString("name");
+                    var ops = stats.get("accesses", Document.class).get("ops", Number.class).longValue();
+                    if (ops == 0 && !name.equals(ID_INDEX) && !justCreated.contains(name)) {
+                        unused.add(name);
+                    }
+                });
+        unused.sort(null);
+        return unused;
+    }
+
+    public record Result(List<String> created, List<String> unexpected, List<String> unused) {
+    }
+}
@@ -0,0 +1,169 @@
+package com.ecommerce.wishlist.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records latency, request/response document size and result count of every Mongo command, tagged by command
+ * name, collection and outcome.
+ * <p>
+ * Listeners run on the driver's I/O thread, so sizes are read from the bytes of {@link RawBsonDocument}s, which is
+ * how responses arrive. Other documents, like most commands, have to be encoded again to be measured and are only
+ * measured once every {@code sizeSampleRate} of them, or never when it is 0. Result counts come from the {@code n} or
+ * {@code value} field of the response; counting a returned cursor batch walks the whole batch and is sampled the same
+ * way. Meters are registered once per command, collection and outcome and reused afterwards.
+ */
+public class MongoCommandMetricsListener implements CommandListener {
+
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    private final MeterRegistry registry;
+
+    private final int sizeSampleRate;
+
+    private final AtomicLong unsampledEvents = new AtomicLong();
+
+    private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+
+    private final Map<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<MeterKey, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public MongoCommandMetricsListener(MeterRegistry registry, int sizeSampleRate) {
+        this.registry = registry;
+        this.sizeSampleRate = sizeSampleRate;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        var command = event.getCommand();
+        startedCommands.put(event.getRequestId(), new StartedCommand(collectionOf(event.getCommandName(), command), sizeOf(command)));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        var started = startedCommands.remove(event.getRequestId());
+        var commandName = event.getCommandName();
+        var response = event.getResponse();
+
+        timer(commandName, started, "success").record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        if (started != null && started.size() >= 0) {
+            summary("wishlist.mongo.command.request.size", "bytes", commandName, started).record(started.size());
+        }
+        var responseSize = sizeOf(response);
+        if (responseSize >= 0) {
+            summary("wishlist.mongo.command.response.size", "bytes", commandName, started).record(responseSize);
+        }
+        var results = resultCount(response, sampled());
+        if (results >= 0) {
+            summary("wishlist.mongo.command.results", "documents", commandName, started).record(results);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        var started = startedCommands.remove(event.getRequestId());
+
+        timer(event.getCommandName(), started, "failure").record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String commandName, StartedCommand started, String status) {
+        return timers.computeIfAbsent(MeterKey.of("wishlist.mongo.command", commandName, started, status), key ->
+                Timer.builder(key.name())
+                        .description("Mongo command latency")
+                        .tags(key.tags())
+                        .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+                        .publishPercentileHistogram()
+                        .register(registry));
+    }
+
+    private DistributionSummary summary(String name, String unit, String commandName, StartedCommand started) {
+        return summaries.computeIfAbsent(MeterKey.of(name, commandName, started, "success"), key ->
+                DistributionSummary.builder(key.name())
+                        .baseUnit(unit)
+                        .tags(key.tags())
+                        .publishPercentiles(0.5, 0.99)
+                        .register(registry));
+    }
+
+    static String collectionOf(String commandName, BsonDocument command) {
+        var target = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return target != null && target.isString() ? target.asString().getValue() : "none";
+    }
+
+    /**
+     * The documents returned or affected by the command, or -1 for a cursor batch that is not to be counted.
+     */
+    static long resultCount(BsonDocument response, boolean countBatch) {
+        var n = response.get("n");
+        if (n != null && n.isNumber()) {
+            return n.asNumber().longValue();
+        }
+        var value = response.get("value");
+        if (value != null) {
+            return value.isNull() ? 0 : 1;
+        }
+        var cursor = response.get("cursor");
+        if (cursor == null || !cursor.isDocument()) {
+            return 0;
+        }
+        if (!countBatch) {
+            return -1;
+        }
+        var batch = cursor.asDocument().containsKey("firstBatch")
+                ? cursor.asDocument().get("firstBatch")
+                : cursor.asDocument().get("nextBatch");
+        return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+    }
+
+    /**
+     * The encoded size of the document, or -1 when it is not raw and not sampled.
+     */
+    int sizeOf(BsonDocument document) {
+        if (document instanceof RawBsonDocument raw) {
+            return raw.getByteBuffer().remaining();
+        }
+        if (!sampled()) {
+            return -1;
+        }
+        try (var buffer = new BasicOutputBuffer(); var writer = new BsonBinaryWriter(buffer)) {
+            CODEC.encode(writer, document, EncoderContext.builder().build());
+            return buffer.getPosition();
+        }
+    }
+
+    private boolean sampled() {
+        return sizeSampleRate > 0 && unsampledEvents.incrementAndGet() % sizeSampleRate == 0;
+    }
+
+    private record StartedCommand(String collection, int size) {
+    }
+
+    private record MeterKey(String name, String command, String collection, String status) {
+
+        static MeterKey of(String name, String commandName, StartedCommand started, String status) {
+            return new MeterKey(name, commandName, started == null ? "unknown" : started.collection(), status);
+        }
+
+        Tags tags() {
+            return Tags.of("command", command, "collection", collection, "status", status);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.ecommerce.wishlist.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Logs Mongo commands slower than {@code wishlist.mongo.slow.threshold.ms} by shape (values replaced by
+ * {@code "?"}) and captures an {@code explain("executionStats")} of that shape in the background. Explains are
+ * deduplicated per shape and globally rate limited; the latest ones are exposed through the {@code slowqueries}
+ * actuator endpoint.
+ * <p>
+ * The command document is only valid during {@code commandStarted}, and copying every command to find the few slow
+ * ones would cost more than the commands themselves. So every command is only fingerprinted by its keys and
+ * operators, and its shape is rendered once per new fingerprint, which lets a slow command be logged by shape right
+ * away. Explaining needs the command with its values: a slow shape that is due for an explain arms the capture of
+ * at most {@code wishlist.mongo.slow.capture.attempts} next commands of that shape, and the first copy that is slow
+ * as well is explained. Nothing is armed while the explain budget of the minute is spent.
+ */
+@Component
+public class SlowCommandListener implements CommandListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowCommandListener.class);
+
+    private static final Set<String> EXPLAINABLE_COMMANDS = Set.of("find", "aggregate", "count", "distinct", "findAndModify", "update", "delete");
+
+    private static final Set<String> SESSION_FIELDS = Set.of("$db", "lsid", "$clusterTime", "txnNumber", "$readPreference", "readConcern", "writeConcern", "apiVersion", "apiStrict", "apiDeprecationErrors");
+
+    private final long thresholdNanos;
+
+    private final long explainIntervalMillis;
+
+    private final int maxExplainsPerMinute;
+
+    private final int maxShapes;
+
+    private final int captureAttempts;
+
+    private final BiFunction<String, Document, Document> explainer;
+
+    private final Executor explainExecutor;
+
+    private final Map<Integer, StartedCommand> startedCommands = new ConcurrentHashMap<>();
+
+    private final Map<Long, String> shapes = new ConcurrentHashMap<>();
+
+    private final Map<String, SlowCommand> slowCommands = new ConcurrentHashMap<>();
+
+    private final AtomicLong explainWindowStart = new AtomicLong();
+
+    private final AtomicInteger explainsInWindow = new AtomicInteger();
+
+    @Autowired
+    public SlowCommandListener(ObjectProvider<MongoTemplate> mongoTemplate,
+                               @Value("${wishlist.mongo.slow.threshold.ms:100}") long thresholdMillis,
+                               @Value("${wishlist.mongo.slow.explain.interval.seconds:300}") long explainIntervalSeconds,
+                               @Value("${wishlist.mongo.slow.explain.max.per.minute:10}") int maxExplainsPerMinute,
+                               @Value("${wishlist.mongo.slow.max.shapes:100}") int maxShapes,
+                               @Value("${wishlist.mongo.slow.capture.attempts:10}") int captureAttempts) {
+        this((database, command) -> mongoTemplate.getObject().getMongoDatabaseFactory().getMongoDatabase(database).runCommand(command),
+                new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16), runnable -> {
+                    var thread = new Thread(runnable, "wishlist-slow-command-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                thresholdMillis, explainIntervalSeconds, maxExplainsPerMinute, maxShapes, captureAttempts);
+    }
+
+    SlowCommandListener(BiFunction<String, Document, Document> explainer, Executor explainExecutor, long thresholdMillis,
+                        long explainIntervalSeconds, int maxExplainsPerMinute, int maxShapes, int captureAttempts) {
+        this.explainer = explainer;
+        this.explainExecutor = explainExecutor;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explainIntervalMillis = TimeUnit.SECONDS.toMillis(explainIntervalSeconds);
+        this.maxExplainsPerMinute = maxExplainsPerMinute;
+        this.maxShapes = maxShapes;
+        this.captureAttempts = captureAttempts;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!isExplainable(event.getCommandName())) {
+            return;
+        }
+        var command = event.getCommand();
+        var fingerprint = fingerprintOf(command);
+        var shape = shapes.get(fingerprint);
+        if (shape == null && shapes.size() < maxShapes) {
+            shape = shapes.computeIfAbsent(fingerprint, key -> shapeOf(command).toJson());
+        }
+        var slowCommand = shape == null ? null : slowCommands.get(shape);
+        // The event document is only valid during the callback, so it is copied when it may be explained.
+        var captured = slowCommand != null && slowCommand.takeCapture() ? command.clone() : null;
+        var target = event.getCommandName() + " " + MongoCommandMetricsListener.collectionOf(event.getCommandName(), command);
+        startedCommands.put(event.getRequestId(), new StartedCommand(target, shape, captured));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        var started = startedCommands.remove(event.getRequestId());
+        long elapsedNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        if (started == null || elapsedNanos < thresholdNanos) {
+            return;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+
+        var shape = started.shape();
+        if (shape == null) {
+            log.warn("Slow Mongo command {} took {} ms", started.target(), elapsedMillis);
+            return;
+        }
+        log.warn("Slow Mongo command {} took {} ms: {}", event.getCommandName(), elapsedMillis, shape);
+
+        if (!slowCommands.containsKey(shape) && slowCommands.size() >= maxShapes) {
+            return;
+        }
+        var slowCommand = slowCommands.computeIfAbsent(shape, key -> new SlowCommand(event.getCommandName(), key));
+        slowCommand.record(elapsedMillis);
+
+        if (started.command() == null) {
+            if (slowCommand.isExplainDue(explainIntervalMillis) && hasExplainPermit()) {
+                slowCommand.armCapture(captureAttempts);
+            }
+            return;
+        }
+        if (slowCommand.shouldExplain(explainIntervalMillis)) {
+            if (acquireExplainPermit()) {
+                explain(event.getDatabaseName(), started.command(), slowCommand);
+            } else {
+                slowCommand.explainSkipped();
+            }
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        startedCommands.remove(event.getRequestId());
+    }
+
+    public Collection<SlowCommand> getSlowCommands() {
+        return slowCommands.values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (explainExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void explain(String database, BsonDocument command, SlowCommand slowCommand) {
+        var explainCommand = explainCommandOf(command);
+        try {
+            explainExecutor.execute(() -> {
+                try {
+                    var explain = explainer.apply(database, explainCommand);
+                    slowCommand.explained(explain);
+                    log.warn("Explain of slow Mongo command {}: {}", slowCommand.getShape(), slowCommand.getPlanSummary());
+                } catch (RuntimeException ex) {
+                    log.warn("Could not explain slow Mongo command {}", slowCommand.getShape(), ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            slowCommand.explainSkipped();
+        }
+    }
+
+    private boolean hasExplainPermit() {
+        return System.currentTimeMillis() - explainWindowStart.get() >= TimeUnit.MINUTES.toMillis(1)
+                || explainsInWindow.get() < maxExplainsPerMinute;
+    }
+
+    private boolean acquireExplainPermit() {
+        long now = System.currentTimeMillis();
+        long windowStart = explainWindowStart.get();
+        if (now - windowStart >= TimeUnit.MINUTES.toMillis(1) && explainWindowStart.compareAndSet(windowStart, now)) {
+            explainsInWindow.set(0);
+        }
+        return explainsInWindow.incrementAndGet() <= maxExplainsPerMinute;
+    }
+
+    public static boolean isExplainable(String commandName) {
+        return EXPLAINABLE_COMMANDS.contains(commandName);
+    }
+
+    /**
+     * The {@code explain("executionStats")} of the command, without the session and driver fields that explain rejects.
+     */
+    public static Document explainCommandOf(BsonDocument command) {
+        return new Document("explain", Document.parse(withoutSessionFields(command).toJson()))
+                .append("verbosity", "executionStats");
+    }
+
+    static BsonDocument withoutSessionFields(BsonDocument command) {
+        var cleaned = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!SESSION_FIELDS.contains(key)) {
+                cleaned.append(key, value);
+            }
+        });
+        return cleaned;
+    }
+
+    /**
+     * A hash of the keys and operators of the command that is equal for commands of the same {@link #shapeOf shape}.
+     * It only reads the document, which is much cheaper than copying or rendering it.
+     */
+    static long fingerprintOf(BsonDocument command) {
+        long fingerprint = 1;
+        var first = true;
+        for (var entry : command.entrySet()) {
+            if (SESSION_FIELDS.contains(entry.getKey())) {
+                continue;
+            }
+            // The first key holds the collection name, which is part of the shape.
+            fingerprint = 31 * (31 * fingerprint + entry.getKey().hashCode())
+                    + (first ? entry.getValue().hashCode() : fingerprintOf(entry.getValue()));
+            first = false;
+        }
+        return fingerprint;
+    }
+
+    private static long fingerprintOf(BsonValue value) {
+        if (value.isDocument()) {
+            long fingerprint = 3;
+            for (var entry : value.asDocument().entrySet()) {
+                fingerprint = 31 * (31 * fingerprint + entry.getKey().hashCode()) + fingerprintOf(entry.getValue());
+            }
+            return fingerprint;
+        }
+        if (value.isArray()) {
+            for (var element : value.asArray()) {
+                if (element.isDocument() || element.isArray()) {
+                    return 5 * 31 + fingerprintOf(element);
+                }
+            }
+            return 7;
+        }
+        return 11;
+    }
+
+    static BsonDocument shapeOf(BsonDocument command) {
+        var shape = new BsonDocument();
+        var first = true;
+        for (var entry : withoutSessionFields(command).entrySet()) {
+            // The first key holds the collection name, which is part of the shape.
+            shape.append(entry.getKey(), first ? entry.getValue() : shapeOf(entry.getValue()));
+            first = false;
+        }
+        return shape;
+    }
+
+    private static BsonValue shapeOf(BsonValue value) {
+        if (value.isDocument()) {
+            var shape = new BsonDocument();
+            value.asDocument().forEach((key, nested) -> shape.append(key, shapeOf(nested)));
+            return shape;
+        }
+        if (value.isArray()) {
+            var shape = new BsonArray();
+            value.asArray().stream()
+                    .filter(element -> element.isDocument() || element.isArray())
+                    .findFirst()
+                    .ifPresentOrElse(element -> shape.add(shapeOf(element)), () -> shape.add(new BsonString("?")));
+            return shape;
+        }
+        return new BsonString("?");
+    }
+
+    private record StartedCommand(String target, String shape, BsonDocument command) {
+    }
+
+    public static class SlowCommand {
+
+        private final String commandName;
+
+        private final String shape;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        private final AtomicLong lastExplainRequest = new AtomicLong();
+
+        private final AtomicInteger remainingCaptures = new AtomicInteger();
+
+        private volatile long lastMillis;
+
+        private volatile Instant lastSeenAt;
+
+        private volatile Instant explainedAt;
+
+        private volatile Document planSummary;
+
+        SlowCommand(String commandName, String shape) {
+            this.commandName = commandName;
+            this.shape = shape;
+        }
+
+        void record(long elapsedMillis) {
+            count.incrementAndGet();
+            maxMillis.accumulateAndGet(elapsedMillis, Math::max);
+            lastMillis = elapsedMillis;
+            lastSeenAt = Instant.now();
+        }
+
+        boolean isExplainDue(long intervalMillis) {
+            long last = lastExplainRequest.get();
+            return last == 0 || System.currentTimeMillis() - last >= intervalMillis;
+        }
+
+        void armCapture(int attempts) {
+            remainingCaptures.compareAndSet(0, attempts);
+        }
+
+        boolean takeCapture() {
+            return remainingCaptures.get() > 0 && remainingCaptures.getAndUpdate(remaining -> Math.max(remaining - 1, 0)) > 0;
+        }
+
+        boolean shouldExplain(long intervalMillis) {
+            long now = System.currentTimeMillis();
+            long last = lastExplainRequest.get();
+            if ((last == 0 || now - last >= intervalMillis) && lastExplainRequest.compareAndSet(last, now)) {
+                remainingCaptures.set(0);
+                return true;
+            }
+            return false;
+        }
+
+        void explainSkipped() {
+            lastExplainRequest.set(0);
+        }
+
+        void explained(Document explain) {
+            planSummary = summarize(explain);
+            explainedAt = Instant.now();
+        }
+
+        public String getCommandName() {
+            return commandName;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxMillis() {
+            return maxMillis.get();
+        }
+
+        public long getLastMillis() {
+            return lastMillis;
+        }
+
+        public Instant getLastSeenAt() {
+            return lastSeenAt;
+        }
+
+        public Instant getExplainedAt() {
+            return explainedAt;
+        }
+
+        public Document getPlanSummary() {
+            return planSummary;
+        }
+
+        static Document summarize(Document explain) {
+            var summary = new Document();
+            var queryPlanner = explain.get("queryPlanner", Document.class);
+            if (queryPlanner != null) {
+                summary.append("winningPlan", queryPlanner.get("winningPlan"));
+            }
+            var executionStats = explain.get("executionStats", Document.class);
+            if (executionStats != null) {
+                summary.append("nReturned", executionStats.get("nReturned"))
+                        .append("totalKeysExamined", executionStats.get("totalKeysExamined"))
+                        .append("totalDocsExamined", executionStats.get("totalDocsExamined"))
+                        .append("executionTimeMillis", executionStats.get("executionTimeMillis"));
+            }
+            return summary;
+        }
+    }
+}
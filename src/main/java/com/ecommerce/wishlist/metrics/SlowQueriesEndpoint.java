@@ -0,0 +1,28 @@
+package com.ecommerce.wishlist.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    private final SlowCommandListener slowCommandListener;
+
+    @Autowired
+    public SlowQueriesEndpoint(SlowCommandListener slowCommandListener) {
+        this.slowCommandListener = slowCommandListener;
+    }
+
+    @ReadOperation
+    public List<SlowCommandListener.SlowCommand> slowQueries() {
+        return slowCommandListener.getSlowCommands().stream()
+                .sorted(Comparator.comparingLong(SlowCommandListener.SlowCommand::getMaxMillis).reversed())
+                .toList();
+    }
+}
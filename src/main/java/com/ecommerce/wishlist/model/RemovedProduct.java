@@ -0,0 +1,16 @@
+package com.ecommerce.wishlist.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RemovedProduct {
+
+    String productId;
+    LocalDateTime removedAt;
+}
@@ -8,6 +8,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -18,6 +20,7 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document("wishlist")
+@CompoundIndex(name = "products_productId", def = "{'products.productId': 1}", background = true)
 public class Wishlist {
 
     @Id
@@ -27,10 +30,17 @@ public class Wishlist {
     LocalDateTime createdAt;
 
     @LastModifiedDate
+    @Indexed(name = "updatedAt", background = true)
     LocalDateTime updatedAt;
 
     List<Product> products;
 
+    Integer totalQuantity;
+
+    List<RemovedProduct> removedProducts;
+
+    LocalDateTime removedProductsTrimmedAt;
+
     @Version
     private Long version;
 
@@ -38,6 +48,13 @@ public class Wishlist {
         Wishlist wishlist = new Wishlist();
         wishlist.setUserId(request.getUserId());
         wishlist.setProducts(request.getProducts().stream().map(Product::fromRequest).collect(Collectors.toList()));
+        wishlist.setTotalQuantity(wishlist.calculateTotalQuantity());
         return wishlist;
     }
+
+    public int calculateTotalQuantity() {
+        return products.stream()
+                .mapToInt(Product::getQuantity)
+                .sum();
+    }
 }
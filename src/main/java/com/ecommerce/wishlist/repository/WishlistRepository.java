@@ -6,8 +6,14 @@ import org.springframework.data.mongodb.repository.Query;
 
 import java.util.Optional;
 
-public interface WishlistRepository extends MongoRepository<Wishlist, String> {
+public interface WishlistRepository extends MongoRepository<Wishlist, String>, WishlistRepositoryCustom {
 
-    @Query("{'userId': ?0, 'products.productId': ?1}")
+    @Query(value = "{'userId': ?0, 'products.productId': ?1}", fields = "{'products.$': 1}")
     Optional<Wishlist> findByUserIdAndProductId(String userId, String productId);
+
+    @Query(value = "{'userId': ?0}", fields = "{'products.productId': 1}")
+    Optional<Wishlist> findProductIdsByUserId(String userId);
+
+    @Query(value = "{'userId': ?0}", fields = "{'version': 1, 'updatedAt': 1}")
+    Optional<Wishlist> findVersionByUserId(String userId);
 }
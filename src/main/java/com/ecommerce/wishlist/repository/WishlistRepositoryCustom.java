@@ -0,0 +1,78 @@
+package com.ecommerce.wishlist.repository;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.RawBsonDocument;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface WishlistRepositoryCustom {
+
+    /**
+     * Increments the quantity of the product when it is already in the wishlist, or appends it otherwise,
+     * in a single round trip, keeping {@code totalQuantity} in step. Returns the updated wishlist, or empty
+     * when the wishlist does not exist or the update would take {@code totalQuantity} above {@code maxItems}.
+     */
+    Optional<Wishlist> addProduct(String userId, Product product, int maxItems);
+
+    /**
+     * Same as {@link #addProduct} for several products with distinct ids, applied as one update: either all of
+     * them are added or, when the wishlist does not exist or the total would exceed {@code maxItems}, none.
+     */
+    Optional<Wishlist> addProducts(String userId, List<Product> products, int maxItems);
+
+    /**
+     * Decrements the quantity of the product, removing it from the wishlist and recording it in
+     * {@code removedProducts} when it reaches zero, in a single round trip. Returns the updated wishlist, or empty
+     * when the wishlist or the product does not exist.
+     */
+    Optional<Wishlist> removeProduct(String userId, String productId);
+
+    /**
+     * Sets the quantity of the product to {@code quantity}, or changes it by {@code delta} when {@code quantity} is
+     * {@code null}, in a single round trip. A quantity of zero or less removes the product like
+     * {@link #removeProduct}. Returns the updated wishlist, or empty when the wishlist or the product does not exist,
+     * or when a higher quantity would take {@code totalQuantity} above {@code maxItems}.
+     */
+    Optional<Wishlist> updateProductQuantity(String userId, String productId, Integer quantity, Integer delta, int maxItems);
+
+    /**
+     * Removes every product, recording them in {@code removedProducts}, in a single round trip. Returns the updated
+     * wishlist, or empty when it does not exist.
+     */
+    Optional<Wishlist> clearProducts(String userId);
+
+    /**
+     * Reads the stored wishlist document as raw BSON, without mapping it to {@link Wishlist}.
+     */
+    Optional<RawBsonDocument> findRawById(String userId);
+
+    /**
+     * Streams the stored documents of the given wishlists as raw BSON to {@code action} while the cursor is
+     * consumed, with only the fields of {@link com.ecommerce.wishlist.response.WishlistResponse}. Missing
+     * wishlists are skipped and the order of the documents is not defined.
+     */
+    void forEachRawById(List<String> userIds, Consumer<RawBsonDocument> action);
+
+    /**
+     * Inserts the wishlists with one unordered bulk write, so a failed insert does not stop the others. Returns the
+     * errors of the failed inserts, each with the index of its wishlist in {@code wishlists}.
+     */
+    List<BulkWriteError> insertUnordered(List<Wishlist> wishlists);
+
+    /**
+     * Returns up to {@code size} randomly sampled user ids, distinct and in {@code _id} order, to split the collection
+     * in ranges of about the same size.
+     */
+    List<String> findSampleIds(int size);
+
+    /**
+     * Streams, in {@code _id} order, the stored documents with an {@code _id} greater than {@code afterId} and up to
+     * {@code toId} as raw BSON to {@code action}, with only the fields of
+     * {@link com.ecommerce.wishlist.response.WishlistResponse}. A {@code null} bound leaves that side of the range open.
+     */
+    void forEachRawByIdRange(String afterId, String toId, Consumer<RawBsonDocument> action);
+}
@@ -0,0 +1,261 @@
+package com.ecommerce.wishlist.repository;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.util.TypeInformation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public class WishlistRepositoryCustomImpl implements WishlistRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final int maxRemovedProducts;
+
+    private final int bulkCursorBatchSize;
+
+    @Autowired
+    public WishlistRepositoryCustomImpl(MongoTemplate mongoTemplate, @Value("${wishlist.changes.max.removed.products:100}") int maxRemovedProducts,
+                                        @Value("${wishlist.bulk.cursor.batch.size:100}") int bulkCursorBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxRemovedProducts = maxRemovedProducts;
+        this.bulkCursorBatchSize = bulkCursorBatchSize;
+    }
+
+    @Override
+    public Optional<Wishlist> addProduct(String userId, Product product, int maxItems) {
+        return addProducts(userId, List.of(product), maxItems);
+    }
+
+    @Override
+    public Optional<Wishlist> addProducts(String userId, List<Product> products, int maxItems) {
+        var quantity = products.stream().mapToInt(Product::getQuantity).sum();
+        var query = new BasicQuery(new Document("_id", userId)
+                .append("$or", List.of(
+                        new Document("totalQuantity", new Document("$lte", maxItems - quantity)),
+                        new Document("totalQuantity", new Document("$exists", false))
+                                .append("$expr", new Document("$lte", List.of(
+                                        new Document("$add", List.of(new Document("$sum", "$products.quantity"), quantity)),
+                                        maxItems))))));
+
+        var productDocuments = products.stream().map(this::toDocument).toList();
+        var now = productDocuments.get(0).get("updatedAt");
+        var productIds = products.stream().map(Product::getProductId).toList();
+        var quantities = products.stream().map(Product::getQuantity).toList();
+
+        var incrementExisting = new Document("$map", new Document("input", new Document("$ifNull", List.of("$products", List.of())))
+                .append("as", "p")
+                .append("in", new Document("$let", new Document()
+                        .append("vars", new Document("i", new Document("$indexOfArray", List.of(literal(productIds), "$$p.productId"))))
+                        .append("in", new Document("$cond", List.of(
+                                new Document("$gte", List.of("$$i", 0)),
+                                new Document("$mergeObjects", List.of("$$p", new Document()
+                                        .append("quantity", new Document("$add", List.of("$$p.quantity",
+                                                new Document("$arrayElemAt", List.of(literal(quantities), "$$i")))))
+                                        .append("updatedAt", now))),
+                                "$$p"))))));
+
+        var appendNew = new Document("$filter", new Document("input", literal(productDocuments))
+                .append("as", "n")
+                .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$n.productId",
+                        new Document("$ifNull", List.of("$products.productId", List.of()))))))));
+
+        var update = AggregationUpdate.from(List.of(Aggregation.stage(new Document("$set", new Document()
+                .append("products", new Document("$concatArrays", List.of(incrementExisting, appendNew)))
+                .append("totalQuantity", new Document("$add", List.of(currentTotalQuantity(), quantity)))
+                .append("updatedAt", now)))));
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Wishlist.class));
+    }
+
+    @Override
+    public Optional<Wishlist> removeProduct(String userId, String productId) {
+        return updateProductQuantity(userId, productId, null, -1, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<Wishlist> updateProductQuantity(String userId, String productId, Integer quantity, Integer delta, int maxItems) {
+        var currentQuantity = new Document("$arrayElemAt", List.of("$products.quantity",
+                new Document("$indexOfArray", List.of("$products.productId", literal(productId)))));
+        var newQuantity = new Document("$max", List.of(0,
+                quantity != null ? literal(quantity) : new Document("$add", List.of(currentQuantity, delta))));
+        var newTotalQuantity = new Document("$add", List.of(
+                new Document("$subtract", List.of(currentTotalQuantity(), currentQuantity)), newQuantity));
+
+        // Lowering a quantity is always allowed, even on wishlists already above the limit.
+        var query = new BasicQuery(new Document("_id", userId).append("products.productId", productId)
+                .append("$expr", new Document("$or", List.of(
+                        new Document("$lte", List.of(newQuantity, currentQuantity)),
+                        new Document("$lte", List.of(newTotalQuantity, maxItems))))));
+
+        var now = mongoTemplate.getConverter().convertToMongoType(LocalDateTime.now());
+        var isUpdatedProduct = new Document("$eq", List.of("$$p.productId", literal(productId)));
+
+        var updateProduct = new Document("$map", new Document("input", "$products")
+                .append("as", "p")
+                .append("in", new Document("$cond", List.of(
+                        isUpdatedProduct,
+                        new Document("$mergeObjects", List.of("$$p", new Document()
+                                .append("quantity", newQuantity)
+                                .append("updatedAt", now))),
+                        "$$p"))));
+
+        var update = AggregationUpdate.from(List.of(
+                Aggregation.stage(new Document("$set", new Document("removedProducts", new Document("$cond", List.of(
+                        new Document("$eq", List.of(newQuantity, 0)),
+                        appendRemovedProducts(List.of(new Document("productId", literal(productId)).append("removedAt", now))),
+                        "$removedProducts"))))),
+                Aggregation.stage(new Document("$set", new Document()
+                        .append("products", new Document("$filter", new Document("input", updateProduct)
+                                .append("as", "p")
+                                .append("cond", new Document("$or", List.of(
+                                        new Document("$not", List.of(isUpdatedProduct)),
+                                        new Document("$gt", List.of("$$p.quantity", 0)))))))
+                        .append("totalQuantity", newTotalQuantity)
+                        .append("updatedAt", now))),
+                trimRemovedProducts()));
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Wishlist.class));
+    }
+
+    @Override
+    public Optional<Wishlist> clearProducts(String userId) {
+        var query = new BasicQuery(new Document("_id", userId));
+
+        var now = mongoTemplate.getConverter().convertToMongoType(LocalDateTime.now());
+        var removedProducts = new Document("$map", new Document("input", new Document("$ifNull", List.of("$products", List.of())))
+                .append("as", "p")
+                .append("in", new Document("productId", "$$p.productId").append("removedAt", now)));
+
+        var update = AggregationUpdate.from(List.of(
+                Aggregation.stage(new Document("$set", new Document("removedProducts", appendRemovedProducts(removedProducts)))),
+                Aggregation.stage(new Document("$set", new Document()
+                        .append("products", List.of())
+                        .append("totalQuantity", 0)
+                        .append("updatedAt", now))),
+                trimRemovedProducts()));
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Wishlist.class));
+    }
+
+    @Override
+    public Optional<RawBsonDocument> findRawById(String userId) {
+        return Optional.ofNullable(mongoTemplate.execute(Wishlist.class, collection -> collection
+                .withDocumentClass(RawBsonDocument.class)
+                .find(new Document("_id", userId))
+                .first()));
+    }
+
+    @Override
+    public void forEachRawById(List<String> userIds, Consumer<RawBsonDocument> action) {
+        mongoTemplate.execute(Wishlist.class, collection -> {
+            collection.withDocumentClass(RawBsonDocument.class)
+                    .find(new Document("_id", new Document("$in", userIds)))
+                    .projection(responseProjection())
+                    // Small batches bound what a chunk holds at once, whatever the size of the chunk.
+                    .batchSize(bulkCursorBatchSize)
+                    .forEach(action);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> findSampleIds(int size) {
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.sample(size),
+                Aggregation.project("_id"),
+                Aggregation.sort(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.aggregate(aggregation, Wishlist.class, Document.class).getMappedResults().stream()
+                .map(document -> document.getString("_id"))
+                .distinct()
+                .toList();
+    }
+
+    @Override
+    public void forEachRawByIdRange(String afterId, String toId, Consumer<RawBsonDocument> action) {
+        var range = new Document();
+        if (afterId != null) {
+            range.append("$gt", afterId);
+        }
+        if (toId != null) {
+            range.append("$lte", toId);
+        }
+        mongoTemplate.execute(Wishlist.class, collection -> {
+            collection.withDocumentClass(RawBsonDocument.class)
+                    .find(range.isEmpty() ? new Document() : new Document("_id", range))
+                    .projection(responseProjection())
+                    .sort(new Document("_id", 1))
+                    .forEach(action);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BulkWriteError> insertUnordered(List<Wishlist> wishlists) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Wishlist.class).insert(wishlists).execute();
+            return List.of();
+        } catch (BulkOperationException ex) {
+            return ex.getErrors();
+        }
+    }
+
+    private static Document responseProjection() {
+        return new Document("createdAt", 1).append("updatedAt", 1).append("products", 1);
+    }
+
+    private Document toDocument(Product product) {
+        return (Document) mongoTemplate.getConverter().convertToMongoType(product, TypeInformation.of(Product.class));
+    }
+
+    private static Document appendRemovedProducts(Object removedProducts) {
+        return new Document("$concatArrays", List.of(new Document("$ifNull", List.of("$removedProducts", List.of())), removedProducts));
+    }
+
+    /**
+     * Keeps the last {@code maxRemovedProducts} tombstones. Deltas since a time before the newest dropped tombstone
+     * can no longer be computed, so that time is kept in {@code removedProductsTrimmedAt}.
+     */
+    private AggregationOperation trimRemovedProducts() {
+        var size = new Document("$size", new Document("$ifNull", List.of("$removedProducts", List.of())));
+        var overflow = new Document("$gt", List.of(size, maxRemovedProducts));
+        return Aggregation.stage(new Document("$set", new Document()
+                .append("removedProductsTrimmedAt", new Document("$cond", List.of(
+                        overflow,
+                        new Document("$arrayElemAt", List.of("$removedProducts.removedAt", new Document("$subtract", List.of(size, maxRemovedProducts + 1)))),
+                        "$removedProductsTrimmedAt")))
+                .append("removedProducts", new Document("$cond", List.of(
+                        overflow,
+                        new Document("$slice", List.of("$removedProducts", -maxRemovedProducts)),
+                        "$removedProducts")))));
+    }
+
+    private static Document currentTotalQuantity() {
+        // Documents written before totalQuantity existed get it computed on their first update.
+        return new Document("$ifNull", List.of("$totalQuantity", new Document("$sum", "$products.quantity")));
+    }
+
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
+    }
+}
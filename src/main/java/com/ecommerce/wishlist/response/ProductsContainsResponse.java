@@ -0,0 +1,26 @@
+package com.ecommerce.wishlist.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductsContainsResponse {
+
+    String userId;
+
+    Map<String, Boolean> products;
+
+    public static ProductsContainsResponse of(String userId, List<String> productIds, Set<String> wishedProductIds) {
+        var products = new LinkedHashMap<String, Boolean>();
+        productIds.forEach(productId -> products.put(productId, wishedProductIds.contains(productId)));
+        return new ProductsContainsResponse(userId, products);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ecommerce.wishlist.response;
+
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.RemovedProduct;
+import com.ecommerce.wishlist.model.Wishlist;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Changes of a wishlist since a {@code since} value. {@code since} should be the {@code next} cursor of the previous
+ * response, which holds the version and {@code updatedAt} it was built from: an unchanged version is answered without
+ * products, otherwise the products changed after that {@code updatedAt} are returned. A bare version only tells
+ * whether the wishlist is unchanged, any other version gets a snapshot. A bare date-time must also be an
+ * {@code updatedAt} returned by the service, since the change timestamps are stamped by the service instances and
+ * not by the client.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WishlistChangesResponse {
+
+    public static final char CURSOR_SEPARATOR = '@';
+
+    String userId;
+
+    Long version;
+
+    LocalDateTime updatedAt;
+
+    boolean snapshot;
+
+    List<ProductResponse> products;
+
+    List<String> removedProductIds;
+
+    String next;
+
+    public static WishlistChangesResponse snapshot(Wishlist wishlist) {
+        return new WishlistChangesResponse(
+                wishlist.getUserId(),
+                wishlist.getVersion(),
+                wishlist.getUpdatedAt(),
+                true,
+                wishlist.getProducts().stream().map(ProductResponse::fromProduct).collect(Collectors.toList()),
+                List.of(),
+                cursorOf(wishlist)
+        );
+    }
+
+    public static WishlistChangesResponse unchanged(Wishlist wishlist) {
+        return new WishlistChangesResponse(wishlist.getUserId(), wishlist.getVersion(), wishlist.getUpdatedAt(), false, List.of(), List.of(),
+                cursorOf(wishlist));
+    }
+
+    /**
+     * Products added or updated after {@code since}, and products removed after it that are not in the wishlist
+     * again. Products without {@code updatedAt} are always reported.
+     */
+    public static WishlistChangesResponse since(Wishlist wishlist, LocalDateTime since) {
+        var productIds = wishlist.getProducts().stream()
+                .map(Product::getProductId)
+                .collect(Collectors.toSet());
+
+        var products = wishlist.getProducts().stream()
+                .filter(product -> product.getUpdatedAt() == null || product.getUpdatedAt().isAfter(since))
+                .map(ProductResponse::fromProduct)
+                .collect(Collectors.toList());
+
+        var removedProductIds = wishlist.getRemovedProducts() == null ? List.<String>of() : wishlist.getRemovedProducts().stream()
+                .filter(removed -> removed.getRemovedAt().isAfter(since))
+                .map(RemovedProduct::getProductId)
+                .filter(productId -> !productIds.contains(productId))
+                .distinct()
+                .collect(Collectors.toList());
+
+        return new WishlistChangesResponse(wishlist.getUserId(), wishlist.getVersion(), wishlist.getUpdatedAt(), false, products, removedProductIds,
+                cursorOf(wishlist));
+    }
+
+    private static String cursorOf(Wishlist wishlist) {
+        if (wishlist.getVersion() == null) {
+            return wishlist.getUpdatedAt() == null ? null : wishlist.getUpdatedAt().toString();
+        }
+        return wishlist.getUpdatedAt() == null
+                ? wishlist.getVersion().toString()
+                : wishlist.getVersion() + String.valueOf(CURSOR_SEPARATOR) + wishlist.getUpdatedAt();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ecommerce.wishlist.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WishlistExportResponse {
+    private State state;
+    private LocalDateTime startedAt;
+    private List<String> files;
+    private long exported;
+    private boolean resumed;
+    private long durationMillis;
+    private long wishlistsPerSecond;
+    private String error;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
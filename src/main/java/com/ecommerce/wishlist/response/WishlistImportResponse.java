@@ -0,0 +1,16 @@
+package com.ecommerce.wishlist.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WishlistImportResponse {
+    private long imported;
+    private long rejected;
+    private String rejectFile;
+    private long durationMillis;
+    private long wishlistsPerSecond;
+}
@@ -0,0 +1,155 @@
+package com.ecommerce.wishlist.response;
+
+import com.ecommerce.wishlist.exception.ApiError;
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes the JSON of a {@link WishlistResponse} straight from a stored document or a cached {@link Wishlist},
+ * without building the response objects. Field names, order and date format match what Jackson produces for
+ * {@link WishlistResponse}.
+ */
+@Component
+public class WishlistJsonWriter {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public WishlistJsonWriter(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public void write(RawBsonDocument document, OutputStream outputStream) throws IOException {
+        try (var generator = createGenerator(outputStream)) {
+            generator.writeStartObject();
+            writeString(generator, "userId", document.get("_id"));
+            writeDate(generator, "createdAt", document.get("createdAt"));
+            writeDate(generator, "updatedAt", document.get("updatedAt"));
+            generator.writeFieldName("products");
+            var products = document.get("products");
+            if (products == null || !products.isArray()) {
+                generator.writeNull();
+            } else {
+                generator.writeStartArray();
+                for (var product : products.asArray()) {
+                    writeProduct(generator, product.asDocument());
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    public void write(Wishlist wishlist, OutputStream outputStream) throws IOException {
+        try (var generator = createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("userId", wishlist.getUserId());
+            writeDate(generator, "createdAt", wishlist.getCreatedAt());
+            writeDate(generator, "updatedAt", wishlist.getUpdatedAt());
+            generator.writeFieldName("products");
+            if (wishlist.getProducts() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeStartArray();
+                for (var product : wishlist.getProducts()) {
+                    writeProduct(generator, product);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the {@link ApiErrorResponse} of a missing wishlist with its {@code userId}, used to report it inline
+     * among other wishlists.
+     */
+    public void writeNotFound(String userId, OutputStream outputStream) throws IOException {
+        try (var generator = createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("userId", userId);
+            generator.writeStringField("type", ApiError.NOT_FOUND.name());
+            generator.writeStringField("message", "Wishlist not found to user: " + userId);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes an {@link ApiErrorResponse}, used to end a stream of wishlists that could not be completed.
+     */
+    public void writeError(ApiError type, String message, OutputStream outputStream) throws IOException {
+        try (var generator = createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", type.name());
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        return jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static void writeProduct(JsonGenerator generator, BsonDocument product) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "productId", product.get("productId"));
+        writeString(generator, "productName", product.get("productName"));
+        generator.writeFieldName("quantity");
+        var quantity = product.get("quantity");
+        if (quantity == null || !quantity.isNumber()) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(quantity.asNumber().intValue());
+        }
+        writeDate(generator, "createdAt", product.get("createdAt"));
+        writeDate(generator, "updatedAt", product.get("updatedAt"));
+        generator.writeEndObject();
+    }
+
+    private static void writeProduct(JsonGenerator generator, Product product) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("productId", product.getProductId());
+        generator.writeStringField("productName", product.getProductName());
+        generator.writeFieldName("quantity");
+        if (product.getQuantity() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(product.getQuantity());
+        }
+        writeDate(generator, "createdAt", product.getCreatedAt());
+        writeDate(generator, "updatedAt", product.getUpdatedAt());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String name, BsonValue value) throws IOException {
+        generator.writeStringField(name, value == null || !value.isString() ? null : value.asString().getValue());
+    }
+
+    private static void writeDate(JsonGenerator generator, String name, BsonValue value) throws IOException {
+        writeDate(generator, name, value == null || !value.isDateTime() ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(value.asDateTime().getValue()), ZoneId.systemDefault()));
+    }
+
+    private static void writeDate(JsonGenerator generator, String name, LocalDateTime value) throws IOException {
+        generator.writeStringField(name, value == null ? null : DATE_FORMAT.format(value));
+    }
+}
@@ -0,0 +1,24 @@
+package com.ecommerce.wishlist.resquest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductQuantityRequest {
+    @Min(value = 0, message = "Quantity cannot be negative")
+    Integer quantity;
+
+    Integer delta;
+
+    @JsonIgnore
+    @AssertTrue(message = "Either quantity or delta must be set, but not both")
+    public boolean isQuantityOrDelta() {
+        return (quantity == null) != (delta == null);
+    }
+}
@@ -10,6 +10,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class ProductRequest {
+    public static final int MAX_BATCH_SIZE = 100;
+
     @NotEmpty(message = "Product id cannot be empty")
     String productId;
 
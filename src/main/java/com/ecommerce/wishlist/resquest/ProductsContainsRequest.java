@@ -0,0 +1,20 @@
+package com.ecommerce.wishlist.resquest;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductsContainsRequest {
+    public static final int MAX_PRODUCT_IDS = 100;
+
+    @NotEmpty(message = "Product ids cannot be empty")
+    @Size(max = MAX_PRODUCT_IDS, message = "Product ids cannot exceed " + MAX_PRODUCT_IDS + " items")
+    List<@NotEmpty(message = "Product id cannot be empty") String> productIds;
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.wishlist.resquest;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WishlistsRequest {
+    public static final int MAX_USER_IDS = 10000;
+
+    @NotEmpty(message = "User ids cannot be empty")
+    @Size(max = MAX_USER_IDS, message = "User ids cannot exceed " + MAX_USER_IDS + " items")
+    List<@NotEmpty(message = "User id cannot be empty") String> userIds;
+}
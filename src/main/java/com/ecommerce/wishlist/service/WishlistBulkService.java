@@ -0,0 +1,9 @@
+package com.ecommerce.wishlist.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface WishlistBulkService {
+    void writeByUserIds(List<String> userIds, OutputStream outputStream) throws IOException;
+}
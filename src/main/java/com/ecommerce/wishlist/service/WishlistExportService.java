@@ -0,0 +1,11 @@
+package com.ecommerce.wishlist.service;
+
+import com.ecommerce.wishlist.exception.ExportInProgressException;
+import com.ecommerce.wishlist.exception.NotFoundException;
+import com.ecommerce.wishlist.response.WishlistExportResponse;
+
+public interface WishlistExportService {
+    WishlistExportResponse start() throws ExportInProgressException;
+
+    WishlistExportResponse getStatus() throws NotFoundException;
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.wishlist.service;
+
+import com.ecommerce.wishlist.response.WishlistImportResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface WishlistImportService {
+    WishlistImportResponse importWishlists(InputStream inputStream) throws IOException;
+}
@@ -1,21 +1,48 @@
 package com.ecommerce.wishlist.service;
 
 import com.ecommerce.wishlist.exception.AlreadyExistsException;
+import com.ecommerce.wishlist.exception.InvalidRequestException;
 import com.ecommerce.wishlist.exception.MaxItemsException;
 import com.ecommerce.wishlist.exception.NotFoundException;
 import com.ecommerce.wishlist.response.ProductResponse;
+import com.ecommerce.wishlist.response.ProductsContainsResponse;
+import com.ecommerce.wishlist.response.WishlistChangesResponse;
 import com.ecommerce.wishlist.response.WishlistResponse;
+import com.ecommerce.wishlist.resquest.ProductQuantityRequest;
 import com.ecommerce.wishlist.resquest.ProductRequest;
 import com.ecommerce.wishlist.resquest.WishlistRequest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface WishlistService {
     WishlistResponse create(WishlistRequest wishlistRequest) throws MaxItemsException, AlreadyExistsException;
 
     WishlistResponse addProduct(String userId, ProductRequest productRequest) throws MaxItemsException, NotFoundException;
 
+    WishlistResponse addProducts(String userId, List<ProductRequest> productRequests) throws MaxItemsException, NotFoundException;
+
     WishlistResponse getByUserId(String userId) throws NotFoundException;
 
+    WishlistResponse getByUserId(String userId, Consumer<String> eTagConsumer) throws NotFoundException;
+
+    void writeByUserId(String userId, OutputStream outputStream) throws NotFoundException, IOException;
+
+    void writeByUserId(String userId, Consumer<String> eTagConsumer, OutputStream outputStream) throws NotFoundException, IOException;
+
+    String getETag(String userId) throws NotFoundException;
+
+    WishlistChangesResponse getChanges(String userId, String since) throws NotFoundException, InvalidRequestException;
+
     ProductResponse isProductInWishlist(String userId, String productId) throws NotFoundException;
 
+    ProductsContainsResponse containsProducts(String userId, List<String> productIds) throws NotFoundException;
+
     void removeProduct(String userId, String productId) throws NotFoundException;
+
+    WishlistResponse updateProductQuantity(String userId, String productId, ProductQuantityRequest productQuantityRequest) throws MaxItemsException, NotFoundException;
+
+    void clearProducts(String userId) throws NotFoundException;
 }
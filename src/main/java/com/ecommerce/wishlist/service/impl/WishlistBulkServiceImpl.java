@@ -0,0 +1,217 @@
+package com.ecommerce.wishlist.service.impl;
+
+import com.ecommerce.wishlist.exception.ApiError;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
+import com.ecommerce.wishlist.service.WishlistBulkService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes many wishlists as NDJSON, one {@link com.ecommerce.wishlist.response.WishlistResponse} per line, or an
+ * {@link com.ecommerce.wishlist.response.ApiErrorResponse} with the {@code userId} for each missing wishlist.
+ * The user ids are split in chunks fetched with one {@code _id $in} query each, in parallel. Every chunk
+ * serializes its documents while the cursor is consumed and hands them to the output in small blocks, so memory
+ * does not grow with the number of user ids. Lines of different chunks are interleaved in no particular order.
+ * <p>
+ * Every request has at most {@code wishlist.bulk.max.chunks.per.request} chunks queued or running, so one large
+ * request cannot take the whole pool. When the shared queue is full, the request thread fetches the chunk itself.
+ * A chunk that fails before anything was written fails the request; once lines are out, the body ends with an
+ * {@link ApiError#INCOMPLETE_RESPONSE} line instead, since the status can no longer change.
+ */
+@Service
+@Timed(value = "wishlist.service", percentiles = {0.5, 0.95, 0.99, 0.999}, histogram = true)
+public class WishlistBulkServiceImpl implements WishlistBulkService {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistBulkServiceImpl.class);
+
+    private static final int FLUSH_BYTES = 16 * 1024;
+
+    private final WishlistRepository wishlistRepository;
+
+    private final WishlistJsonWriter wishlistJsonWriter;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int chunkSize;
+
+    private final int maxChunksPerRequest;
+
+    @Autowired
+    public WishlistBulkServiceImpl(WishlistRepository wishlistRepository, WishlistJsonWriter wishlistJsonWriter,
+                                   @Value("${wishlist.bulk.chunk.size:500}") int chunkSize,
+                                   @Value("${wishlist.bulk.parallelism:4}") int parallelism,
+                                   @Value("${wishlist.bulk.queue.capacity:64}") int queueCapacity,
+                                   @Value("${wishlist.bulk.max.chunks.per.request:4}") int maxChunksPerRequest) {
+        this.wishlistRepository = wishlistRepository;
+        this.wishlistJsonWriter = wishlistJsonWriter;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRequest = maxChunksPerRequest;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void writeByUserIds(List<String> userIds, OutputStream outputStream) throws IOException {
+        var distinctUserIds = List.copyOf(new LinkedHashSet<>(userIds));
+        var output = new SharedOutput(outputStream);
+
+        var chunks = new ArrayDeque<Future<?>>();
+        try {
+            for (var from = 0; from < distinctUserIds.size(); from += chunkSize) {
+                if (chunks.size() >= maxChunksPerRequest) {
+                    chunks.removeFirst().get();
+                }
+                var chunk = distinctUserIds.subList(from, Math.min(from + chunkSize, distinctUserIds.size()));
+                chunks.addLast(executor.submit(() -> {
+                    writeChunk(chunk, output);
+                    return null;
+                }));
+            }
+            while (!chunks.isEmpty()) {
+                chunks.removeFirst().get();
+            }
+        } catch (ExecutionException ex) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            fail(output, ex.getCause());
+        } catch (InterruptedException ex) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing wishlists");
+        }
+        outputStream.flush();
+    }
+
+    private void fail(SharedOutput output, Throwable cause) throws IOException {
+        if (cause instanceof IOException) {
+            output.abort(null);
+            throw (IOException) cause;
+        }
+        var errorLine = new ByteArrayOutputStream();
+        wishlistJsonWriter.writeError(ApiError.INCOMPLETE_RESPONSE,
+                "Wishlists could not be written, the lines above are not the whole response", errorLine);
+        errorLine.write('\n');
+        if (!output.abort(errorLine)) {
+            throw asIOException(cause);
+        }
+        log.error("Bulk wishlist write failed after part of the response was written", cause);
+    }
+
+    private void writeChunk(List<String> userIds, SharedOutput output) throws IOException {
+        var missingUserIds = new HashSet<>(userIds);
+        var buffer = new ByteArrayOutputStream(2 * FLUSH_BYTES);
+
+        try {
+            wishlistRepository.forEachRawById(userIds, document -> {
+                missingUserIds.remove(document.getString("_id").getValue());
+                try {
+                    wishlistJsonWriter.write(document, buffer);
+                    buffer.write('\n');
+                    if (buffer.size() >= FLUSH_BYTES) {
+                        output.write(buffer);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        for (var userId : userIds) {
+            if (missingUserIds.contains(userId)) {
+                wishlistJsonWriter.writeNotFound(userId, buffer);
+                buffer.write('\n');
+            }
+        }
+        output.write(buffer);
+    }
+
+
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * The output shared by the chunks of one request, written in blocks of whole lines.
+     */
+    private static final class SharedOutput {
+
+        private final OutputStream outputStream;
+
+        private boolean written;
+
+        private boolean aborted;
+
+        private SharedOutput(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        synchronized void write(ByteArrayOutputStream buffer) throws IOException {
+            if (aborted) {
+                throw new IOException("Bulk wishlist write was aborted");
+            }
+            buffer.writeTo(outputStream);
+            buffer.reset();
+            written = true;
+        }
+
+        /**
+         * Stops chunks that are still running from writing and ends what was written with the error line.
+         *
+         * @return whether anything was written
+         */
+        synchronized boolean abort(ByteArrayOutputStream errorLine) throws IOException {
+            aborted = true;
+            if (written && errorLine != null) {
+                errorLine.writeTo(outputStream);
+            }
+            return written;
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        var count = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "wishlist-bulk-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,446 @@
+package com.ecommerce.wishlist.service.impl;
+
+import com.ecommerce.wishlist.exception.ExportInProgressException;
+import com.ecommerce.wishlist.exception.NotFoundException;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.response.WishlistExportResponse;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
+import com.ecommerce.wishlist.service.WishlistExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the whole collection as gzip-compressed NDJSON, one {@link com.ecommerce.wishlist.response.WishlistResponse}
+ * per line. The {@code _id}s are split in {@code wishlist.export.partitions} ranges from a sample of ids, and every
+ * range is read by its own cursor in {@code _id} order and written to its own file through a {@link FileChannel}.
+ * <p>
+ * Every {@code wishlist.export.checkpoint.interval} wishlists a partition ends its gzip member, forces the file and
+ * records the last {@code _id} and the file size in {@code checkpoint.json}. The file up to that size is a complete
+ * gzip stream, so an export that did not finish is resumed by cutting every file back to its checkpoint and reading
+ * again after its last {@code _id}. Wishlists written during the export may or may not be included.
+ * <p>
+ * Only one export runs at a time. {@link #start()} runs it on a background thread and {@link #getStatus()} reports
+ * its progress, with the files relative to {@code wishlist.export.dir}.
+ */
+@Service
+@Timed(value = "wishlist.service", percentiles = {0.5, 0.95, 0.99, 0.999}, histogram = true)
+public class WishlistExportServiceImpl implements WishlistExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistExportServiceImpl.class);
+
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final int SAMPLES_PER_PARTITION = 32;
+
+    private final WishlistRepository wishlistRepository;
+
+    private final WishlistJsonWriter wishlistJsonWriter;
+
+    private final ObjectMapper objectMapper;
+
+    private final Path directory;
+
+    private final int partitions;
+
+    private final int checkpointInterval;
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "wishlist-export-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile ExportJob lastJob;
+
+    @Autowired
+    public WishlistExportServiceImpl(WishlistRepository wishlistRepository, WishlistJsonWriter wishlistJsonWriter, ObjectMapper objectMapper,
+                                     @Value("${wishlist.export.dir:${java.io.tmpdir}/wishlist-export}") String directory,
+                                     @Value("${wishlist.export.partitions:4}") int partitions,
+                                     @Value("${wishlist.export.checkpoint.interval:10000}") int checkpointInterval) {
+        this.wishlistRepository = wishlistRepository;
+        this.wishlistJsonWriter = wishlistJsonWriter;
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory);
+        this.partitions = partitions;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    @Override
+    public WishlistExportResponse start() throws ExportInProgressException {
+        var job = newJob();
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    run(job);
+                } catch (IOException | RuntimeException ex) {
+                    log.error("Could not export wishlists to {}", directory, ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            job.failed();
+            running.set(false);
+            throw ex;
+        }
+        return job.status();
+    }
+
+    @Override
+    public WishlistExportResponse getStatus() throws NotFoundException {
+        var job = lastJob;
+        if (job == null) {
+            throw new NotFoundException("No wishlist export was started");
+        }
+        return job.status();
+    }
+
+    private ExportJob newJob() throws ExportInProgressException {
+        if (!running.compareAndSet(false, true)) {
+            throw new ExportInProgressException("A wishlist export is already running");
+        }
+        var job = new ExportJob();
+        lastJob = job;
+        return job;
+    }
+
+    private void run(ExportJob job) throws IOException {
+        var completed = false;
+        try {
+            export(job);
+            completed = true;
+        } finally {
+            // Cleared first, so a new export can be started as soon as this one is reported finished.
+            running.set(false);
+            if (completed) {
+                job.completed();
+            } else {
+                job.failed();
+            }
+        }
+        var status = job.status();
+        log.info("Exported {} wishlists to {} in {} ms ({} wishlists/s{})", status.getExported(), directory,
+                status.getDurationMillis(), status.getWishlistsPerSecond(), status.isResumed() ? ", resumed" : "");
+    }
+
+    private void export(ExportJob job) throws IOException {
+        Files.createDirectories(directory);
+
+        var checkpoint = readCheckpoint();
+        var resumed = checkpoint != null && checkpoint.partitions().stream().anyMatch(partition -> !partition.done());
+        if (!resumed) {
+            deleteExportFiles();
+            checkpoint = new Checkpoint(split());
+        }
+        var checkpoints = new Checkpoints(checkpoint.partitions());
+        checkpoints.save(null);
+        job.started(checkpoints, resumed, checkpoint.partitions().stream().map(Partition::file).toList());
+
+        var executor = Executors.newFixedThreadPool(checkpoint.partitions().size(), runnable -> {
+            var thread = new Thread(runnable, "wishlist-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            var exports = new ArrayList<Future<?>>();
+            for (var partition : checkpoint.partitions()) {
+                if (!partition.done()) {
+                    exports.add(executor.submit(() -> {
+                        try (var export = new PartitionExport(partition, checkpoints)) {
+                            export.run();
+                        }
+                        return null;
+                    }));
+                }
+            }
+            await(exports);
+        } finally {
+            // Partitions left running after a failure must not write into a resumed export.
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Picks {@code partitions - 1} boundaries evenly spread over a sample of ids sorted by the database, so the
+     * ranges follow its ordering of {@code _id}. Partition {@code i} holds the ids after boundary {@code i - 1} and
+     * up to boundary {@code i}.
+     */
+    private List<Partition> split() {
+        var samples = wishlistRepository.findSampleIds(partitions * SAMPLES_PER_PARTITION);
+        var boundaries = samples.isEmpty() ? List.<String>of() : IntStream.range(1, partitions)
+                .mapToObj(i -> samples.get(i * samples.size() / partitions))
+                .distinct()
+                .toList();
+
+        var ranges = new ArrayList<Partition>();
+        for (var i = 0; i <= boundaries.size(); i++) {
+            ranges.add(new Partition(i,
+                    i == 0 ? null : boundaries.get(i - 1),
+                    i == boundaries.size() ? null : boundaries.get(i),
+                    null, 0, 0, false));
+        }
+        return ranges;
+    }
+
+    private Checkpoint readCheckpoint() throws IOException {
+        var file = directory.resolve(CHECKPOINT_FILE);
+        return Files.exists(file) ? objectMapper.readValue(file.toFile(), Checkpoint.class) : null;
+    }
+
+    private void deleteExportFiles() throws IOException {
+        try (var files = Files.newDirectoryStream(directory, "wishlist-export-*.ndjson.gz")) {
+            for (var file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void await(List<Future<?>> exports) throws IOException {
+        try {
+            for (var export : exports) {
+                export.get();
+            }
+        } catch (ExecutionException ex) {
+            exports.forEach(export -> export.cancel(true));
+            if (ex.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            exports.forEach(export -> export.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting wishlists");
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws InterruptedIOException {
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting wishlists");
+        }
+    }
+
+    private record Partition(int index, String afterId, String toId, String lastId, long position, long count, boolean done) {
+
+        String file() {
+            return "wishlist-export-" + index + ".ndjson.gz";
+        }
+    }
+
+    private record Checkpoint(List<Partition> partitions) {
+    }
+
+    /**
+     * The progress of one export, counted from its checkpoints.
+     */
+    private static class ExportJob {
+
+        private final LocalDateTime startedAt = LocalDateTime.now();
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile WishlistExportResponse.State state = WishlistExportResponse.State.RUNNING;
+
+        private volatile Checkpoints checkpoints;
+
+        private volatile boolean resumed;
+
+        private volatile List<String> files = List.of();
+
+        private volatile long exportedBefore;
+
+        private volatile long durationNanos = -1;
+
+        void started(Checkpoints checkpoints, boolean resumed, List<String> files) {
+            this.exportedBefore = checkpoints.exported();
+            this.resumed = resumed;
+            this.files = files;
+            this.checkpoints = checkpoints;
+        }
+
+        void completed() {
+            finish(WishlistExportResponse.State.COMPLETED);
+        }
+
+        void failed() {
+            finish(WishlistExportResponse.State.FAILED);
+        }
+
+        private void finish(WishlistExportResponse.State state) {
+            durationNanos = System.nanoTime() - startNanos;
+            this.state = state;
+        }
+
+        WishlistExportResponse status() {
+            var state = this.state;
+            var progress = checkpoints;
+            var exported = progress == null ? 0 : progress.exported();
+            var elapsedNanos = state == WishlistExportResponse.State.RUNNING ? System.nanoTime() - startNanos : durationNanos;
+            var wishlistsPerSecond = elapsedNanos == 0 ? 0 : (exported - exportedBefore) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            return new WishlistExportResponse(state, startedAt, files, exported, resumed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    wishlistsPerSecond, state == WishlistExportResponse.State.FAILED ? "The export failed, it is resumed by the next one." : null);
+        }
+    }
+
+    /**
+     * The latest checkpoint of every partition, written to {@code checkpoint.json} through a temporary file so a
+     * crash never leaves it half written.
+     */
+    private class Checkpoints {
+
+        private final Partition[] partitions;
+
+        Checkpoints(List<Partition> partitions) {
+            this.partitions = partitions.toArray(Partition[]::new);
+        }
+
+        synchronized void save(Partition partition) throws IOException {
+            if (partition != null) {
+                partitions[partition.index()] = partition;
+            }
+            var file = directory.resolve(CHECKPOINT_FILE);
+            var temporaryFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.write(temporaryFile, objectMapper.writeValueAsBytes(new Checkpoint(List.of(partitions))));
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        synchronized long exported() {
+            return Arrays.stream(partitions).mapToLong(Partition::count).sum();
+        }
+    }
+
+    private class PartitionExport implements Closeable {
+
+        private final Checkpoints checkpoints;
+
+        private final FileChannel channel;
+
+        private final OutputStream output;
+
+        private Partition partition;
+
+        private GZIPOutputStream member;
+
+        private String lastId;
+
+        private int sinceCheckpoint;
+
+        PartitionExport(Partition partition, Checkpoints checkpoints) throws IOException {
+            this.partition = partition;
+            this.checkpoints = checkpoints;
+            this.lastId = partition.lastId();
+            this.channel = FileChannel.open(directory.resolve(partition.file()), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Whatever follows the checkpoint is an unfinished gzip member of an export that did not complete.
+            channel.truncate(partition.position());
+            channel.position(partition.position());
+            this.output = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+            this.member = newMember();
+        }
+
+        void run() throws IOException {
+            try {
+                wishlistRepository.forEachRawByIdRange(lastId != null ? lastId : partition.afterId(), partition.toId(), document -> {
+                    try {
+                        write(document);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            checkpoint(true);
+        }
+
+        private void write(RawBsonDocument document) throws IOException {
+            wishlistJsonWriter.write(document, member);
+            member.write('\n');
+            lastId = document.getString("_id").getValue();
+            if (++sinceCheckpoint == checkpointInterval) {
+                checkpoint(false);
+            }
+        }
+
+        private void checkpoint(boolean done) throws IOException {
+            member.close();
+            output.flush();
+            channel.force(false);
+            partition = new Partition(partition.index(), partition.afterId(), partition.toId(), lastId,
+                    channel.position(), partition.count() + sinceCheckpoint, done);
+            sinceCheckpoint = 0;
+            checkpoints.save(partition);
+            if (!done) {
+                member = newMember();
+            }
+        }
+
+        /**
+         * Starts a gzip member whose {@code close()} writes its trailer without closing the file.
+         */
+        private GZIPOutputStream newMember() throws IOException {
+            return new GZIPOutputStream(new FilterOutputStream(output) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            }, BUFFER_BYTES);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.ecommerce.wishlist.service.impl;
+
+import com.ecommerce.wishlist.exception.ApiError;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.response.WishlistImportResponse;
+import com.ecommerce.wishlist.resquest.WishlistRequest;
+import com.ecommerce.wishlist.service.WishlistImportService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports NDJSON {@link WishlistRequest}s, one per line, as new wishlists. Lines are parsed and validated with the
+ * constraints of {@code POST /api/wishlist} as they are read, and the valid ones inserted with unordered bulk writes
+ * of {@code wishlist.import.batch.size} wishlists. At most {@code wishlist.import.max.in.flight.batches} batches are
+ * written at a time, reading blocks while they are all busy. Rejected lines are written to an NDJSON reject file
+ * in {@code wishlist.import.reject.dir} with their line number and errors. Lines longer than
+ * {@code wishlist.import.max.line.length} characters are rejected without being held in memory.
+ * <p>
+ * Unlike the export, the import runs within its request: its source is the request body, which is only readable
+ * while the request lasts. Running it in the background would mean spooling the whole upload to disk first, while
+ * reading it in place lets the busy batches slow the upload down instead.
+ */
+@Service
+@Timed(value = "wishlist.service", percentiles = {0.5, 0.95, 0.99, 0.999}, histogram = true)
+public class WishlistImportServiceImpl implements WishlistImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(WishlistImportServiceImpl.class);
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final WishlistRepository wishlistRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader requestReader;
+
+    private final Validator validator;
+
+    private final int maxItem;
+
+    private final int batchSize;
+
+    private final int maxInFlightBatches;
+
+    private final int maxLineLength;
+
+    private final Path rejectDirectory;
+
+    private final ExecutorService executor;
+
+    @Autowired
+    public WishlistImportServiceImpl(WishlistRepository wishlistRepository, ObjectMapper objectMapper, Validator validator,
+                                     @Value("${wishlist.max.items:20}") int maxItem,
+                                     @Value("${wishlist.import.batch.size:1000}") int batchSize,
+                                     @Value("${wishlist.import.max.in.flight.batches:4}") int maxInFlightBatches,
+                                     @Value("${wishlist.import.max.line.length:65536}") int maxLineLength,
+                                     @Value("${wishlist.import.reject.dir:${java.io.tmpdir}}") String rejectDirectory) {
+        this.wishlistRepository = wishlistRepository;
+        this.objectMapper = objectMapper;
+        this.requestReader = objectMapper.readerFor(WishlistRequest.class);
+        this.validator = validator;
+        this.maxItem = maxItem;
+        this.batchSize = batchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.maxLineLength = maxLineLength;
+        this.rejectDirectory = Path.of(rejectDirectory);
+        this.executor = Executors.newFixedThreadPool(maxInFlightBatches, runnable -> {
+            var thread = new Thread(runnable, "wishlist-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public WishlistImportResponse importWishlists(InputStream inputStream) throws IOException {
+        var startNanos = System.nanoTime();
+        var inFlightBatches = new Semaphore(maxInFlightBatches);
+        var imported = new AtomicLong();
+        var failure = new AtomicReference<Throwable>();
+
+        try (var rejects = new RejectWriter(rejectDirectory.resolve("wishlist-import-rejects-" + UUID.randomUUID() + ".ndjson"));
+             var reader = new LineReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), maxLineLength)) {
+            try {
+                var batch = new ArrayList<ImportLine>(batchSize);
+                var lineNumber = 0L;
+                String line;
+                while ((line = reader.readLine()) != null && failure.get() == null) {
+                    lineNumber++;
+                    if (reader.isTooLong()) {
+                        rejects.write(new Reject(lineNumber, null, ApiError.VALIDATION_ERROR,
+                                List.of("Line cannot be longer than " + maxLineLength + " characters")));
+                        continue;
+                    }
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    var wishlist = toWishlist(lineNumber, line, rejects);
+                    if (wishlist != null) {
+                        batch.add(new ImportLine(lineNumber, wishlist));
+                    }
+                    if (batch.size() == batchSize) {
+                        submit(batch, inFlightBatches, imported, failure, rejects);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && failure.get() == null) {
+                    submit(batch, inFlightBatches, imported, failure, rejects);
+                }
+            } finally {
+                // Every permit is back once the last batch is written, and only then the rejects can be closed.
+                inFlightBatches.acquireUninterruptibly(maxInFlightBatches);
+            }
+            throwIfFailed(failure.get());
+
+            var durationNanos = System.nanoTime() - startNanos;
+            var wishlistsPerSecond = durationNanos == 0 ? 0 : imported.get() * TimeUnit.SECONDS.toNanos(1) / durationNanos;
+            log.info("Imported {} wishlists and rejected {} in {} ms ({} wishlists/s)",
+                    imported.get(), rejects.count(), TimeUnit.NANOSECONDS.toMillis(durationNanos), wishlistsPerSecond);
+
+            return new WishlistImportResponse(imported.get(), rejects.count(),
+                    rejects.count() == 0 ? null : rejects.path().getFileName().toString(),
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), wishlistsPerSecond);
+        }
+    }
+
+    private Wishlist toWishlist(long lineNumber, String line, RejectWriter rejects) throws IOException {
+        WishlistRequest request;
+        try {
+            request = requestReader.readValue(line);
+        } catch (JsonProcessingException ex) {
+            rejects.write(new Reject(lineNumber, null, ApiError.VALIDATION_ERROR, List.of(ex.getOriginalMessage())));
+            return null;
+        }
+        if (request == null) {
+            rejects.write(new Reject(lineNumber, null, ApiError.VALIDATION_ERROR, List.of("Wishlist cannot be null")));
+            return null;
+        }
+
+        var violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            var errors = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .toList();
+            rejects.write(new Reject(lineNumber, request.getUserId(), ApiError.VALIDATION_ERROR, errors));
+            return null;
+        }
+
+        if (request.getProducts() == null) {
+            request.setProducts(List.of());
+        }
+        var wishlist = Wishlist.fromRequest(request);
+        if (wishlist.getTotalQuantity() > maxItem) {
+            rejects.write(new Reject(lineNumber, request.getUserId(), ApiError.MAX_ITEMS,
+                    List.of("The total number of items on the wish list cannot exceed " + maxItem + ".")));
+            return null;
+        }
+
+        // Bulk inserts do not initialize the version like insert does, and auditing does not see a versioned
+        // wishlist as new, so both are set here.
+        var now = LocalDateTime.now();
+        wishlist.setCreatedAt(now);
+        wishlist.setUpdatedAt(now);
+        wishlist.setVersion(0L);
+        return wishlist;
+    }
+
+    private void submit(List<ImportLine> batch, Semaphore inFlightBatches, AtomicLong imported,
+                        AtomicReference<Throwable> failure, RejectWriter rejects) throws IOException {
+        acquire(inFlightBatches);
+        executor.execute(() -> {
+            try {
+                var errors = wishlistRepository.insertUnordered(batch.stream().map(ImportLine::wishlist).toList());
+                for (var error : errors) {
+                    var line = batch.get(error.getIndex());
+                    var userId = line.wishlist().getUserId();
+                    rejects.write(error.getCode() == DUPLICATE_KEY
+                            ? new Reject(line.number(), userId, ApiError.WISHLIST_ALREADY_EXISTS, List.of("Wishlist already exists to user: " + userId))
+                            : new Reject(line.number(), userId, ApiError.VALIDATION_ERROR, List.of(error.getMessage())));
+                }
+                imported.addAndGet(batch.size() - errors.size());
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            } finally {
+                inFlightBatches.release();
+            }
+        });
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing wishlists");
+        }
+    }
+
+    private static void throwIfFailed(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        throw new IOException(failure);
+    }
+
+    private record ImportLine(long number, Wishlist wishlist) {
+    }
+
+    private record Reject(long line, String userId, ApiError type, List<String> errors) {
+    }
+
+    /**
+     * Reads lines ended by {@code \n} or {@code \r\n}, keeping at most {@code maxLength} characters of a line. The
+     * rest of a longer line is skipped, and it is read as an empty line reported by {@link #isTooLong()}.
+     */
+    private static final class LineReader implements Closeable {
+
+        private final Reader reader;
+
+        private final int maxLength;
+
+        private final char[] buffer = new char[8192];
+
+        private final StringBuilder line = new StringBuilder();
+
+        private int position;
+
+        private int limit;
+
+        private boolean tooLong;
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        String readLine() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            var started = false;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(reader.read(buffer), 0);
+                    position = 0;
+                    if (limit == 0) {
+                        return started ? endLine() : null;
+                    }
+                }
+                started = true;
+                var start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    position++;
+                    return endLine();
+                }
+            }
+        }
+
+        boolean isTooLong() {
+            return tooLong;
+        }
+
+        private void append(int start, int end) {
+            if (tooLong) {
+                return;
+            }
+            // One more character for a \r before the \n.
+            if (line.length() + end - start > maxLength + 1) {
+                tooLong = true;
+                line.setLength(0);
+                return;
+            }
+            line.append(buffer, start, end - start);
+        }
+
+        private String endLine() {
+            var length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                length--;
+            }
+            if (length > maxLength) {
+                tooLong = true;
+                length = 0;
+            }
+            return line.substring(0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Appends rejects as NDJSON, opening the file on the first one so imports without rejects leave no file behind.
+     * Batches report their rejects from their own threads.
+     */
+    private class RejectWriter implements Closeable {
+
+        private final Path path;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private OutputStream outputStream;
+
+        RejectWriter(Path path) {
+            this.path = path;
+        }
+
+        synchronized void write(Reject reject) throws IOException {
+            if (outputStream == null) {
+                // Never append to or overwrite the rejects of another import.
+                outputStream = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            }
+            outputStream.write(objectMapper.writeValueAsBytes(reject));
+            outputStream.write('\n');
+            count.incrementAndGet();
+        }
+
+        Path path() {
+            return path;
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+}
@@ -1,79 +1,244 @@
 package com.ecommerce.wishlist.service.impl;
 
+import com.ecommerce.wishlist.cache.WishlistCache;
+import com.ecommerce.wishlist.cache.WishlistJsonCache;
 import com.ecommerce.wishlist.response.ProductResponse;
+import com.ecommerce.wishlist.response.ProductsContainsResponse;
+import com.ecommerce.wishlist.response.WishlistChangesResponse;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
 import com.ecommerce.wishlist.response.WishlistResponse;
+import com.ecommerce.wishlist.resquest.ProductQuantityRequest;
 import com.ecommerce.wishlist.resquest.ProductRequest;
 import com.ecommerce.wishlist.resquest.WishlistRequest;
 import com.ecommerce.wishlist.exception.AlreadyExistsException;
+import com.ecommerce.wishlist.exception.InvalidRequestException;
 import com.ecommerce.wishlist.exception.MaxItemsException;
 import com.ecommerce.wishlist.exception.NotFoundException;
 import com.ecommerce.wishlist.model.Product;
 import com.ecommerce.wishlist.model.Wishlist;
 import com.ecommerce.wishlist.repository.WishlistRepository;
 import com.ecommerce.wishlist.service.WishlistService;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "wishlist.service", percentiles = {0.5, 0.95, 0.99, 0.999}, histogram = true)
 public class WishlistServiceImpl implements WishlistService {
     private final WishlistRepository wishlistRepository;
 
+    private final WishlistCache wishlistCache;
+
+    private final WishlistJsonWriter wishlistJsonWriter;
+
+    private final WishlistJsonCache wishlistJsonCache;
+
     private final int maxItem;
 
+    private final boolean rawJsonEnabled;
+
+    private final Duration changesClockSkew;
+
     @Autowired
-    public WishlistServiceImpl(WishlistRepository wishlistRepository,  @Value("${wishlist.max.items:20}") int maxItem) {
+    public WishlistServiceImpl(WishlistRepository wishlistRepository, WishlistCache wishlistCache, WishlistJsonWriter wishlistJsonWriter,
+                               WishlistJsonCache wishlistJsonCache,
+                               @Value("${wishlist.max.items:20}") int maxItem,
+                               @Value("${wishlist.get.raw.json.enabled:false}") boolean rawJsonEnabled,
+                               @Value("${wishlist.changes.clock.skew.ms:5000}") long changesClockSkewMillis) {
         this.wishlistRepository = wishlistRepository;
+        this.wishlistCache = wishlistCache;
+        this.wishlistJsonWriter = wishlistJsonWriter;
+        this.wishlistJsonCache = wishlistJsonCache;
         this.maxItem = maxItem;
+        this.rawJsonEnabled = rawJsonEnabled;
+        this.changesClockSkew = Duration.ofMillis(changesClockSkewMillis);
     }
 
     @Override
     public WishlistResponse create(WishlistRequest wishlistRequest) throws MaxItemsException, AlreadyExistsException {
-        var existingWishlist = wishlistRepository.findById(wishlistRequest.getUserId());
-        if (existingWishlist.isPresent()) {
-            throw new AlreadyExistsException("Wishlist already exists to user: " + wishlistRequest.getUserId());
-        }
-
         var wishlist = Wishlist.fromRequest(wishlistRequest);
         checkTotalQuantity(wishlist);
 
-        wishlist = wishlistRepository.save(wishlist);
+        Wishlist savedWishlist;
+        try {
+            savedWishlist = wishlistRepository.insert(wishlist);
+        } catch (DuplicateKeyException ex) {
+            throw new AlreadyExistsException("Wishlist already exists to user: " + wishlistRequest.getUserId());
+        }
+        // A deleted wishlist of the same user may still be cached as JSON, and versions start over at 0.
+        wishlistJsonCache.invalidate(savedWishlist.getUserId());
+        wishlistCache.put(savedWishlist);
 
-        return WishlistResponse.fromWishlist(wishlist);
+        return WishlistResponse.fromWishlist(savedWishlist);
     }
 
     @Override
     public WishlistResponse addProduct(String userId, ProductRequest productRequest) throws MaxItemsException, NotFoundException {
-        var wishlist = wishlistRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+        var product = Product.fromRequest(productRequest);
+        var wishlist = wishlistRepository.addProduct(userId, product, maxItem);
+
+        return addedWishlist(userId, wishlist);
+    }
 
-        var optionalProduct = wishlist.getProducts().stream()
-                .filter(p -> p.getProductId().equals(productRequest.getProductId()))
-                .findFirst();
+    @Override
+    public WishlistResponse addProducts(String userId, List<ProductRequest> productRequests) throws MaxItemsException, NotFoundException {
+        var products = new LinkedHashMap<String, Product>();
+        for (var productRequest : productRequests) {
+            products.merge(productRequest.getProductId(), Product.fromRequest(productRequest), (merged, duplicate) -> {
+                merged.setQuantity(merged.getQuantity() + duplicate.getQuantity());
+                return merged;
+            });
+        }
 
-        if (optionalProduct.isPresent()) {
-            var product = optionalProduct.get();
-            product.setQuantity(product.getQuantity() + productRequest.getQuantity());
-            product.setUpdatedAt(LocalDateTime.now());
-        } else {
-            wishlist.getProducts().add(Product.fromRequest(productRequest));
+        var quantity = products.values().stream().mapToInt(Product::getQuantity).sum();
+        if (quantity > maxItem) {
+            throw maxItemsException();
         }
+        var wishlist = wishlistRepository.addProducts(userId, List.copyOf(products.values()), maxItem);
 
-        checkTotalQuantity(wishlist);
+        return addedWishlist(userId, wishlist);
+    }
+
+    @Override
+    public WishlistResponse getByUserId(String userId) throws NotFoundException {
+        return getByUserId(userId, eTag -> { });
+    }
 
-        wishlist = wishlistRepository.save(wishlist);
+    @Override
+    public WishlistResponse getByUserId(String userId, Consumer<String> eTagConsumer) throws NotFoundException {
+        var wishlist = wishlistCache.get(userId).orElse(null);
+        if (wishlist == null) {
+            wishlist = wishlistRepository.findById(userId)
+                    .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+            wishlistCache.put(wishlist);
+        }
+        eTagConsumer.accept(eTagOf(wishlist));
 
         return WishlistResponse.fromWishlist(wishlist);
     }
 
     @Override
-    public WishlistResponse getByUserId(String userId) throws NotFoundException {
-         var wishlist = wishlistRepository.findById(userId)
+    public void writeByUserId(String userId, OutputStream outputStream) throws NotFoundException, IOException {
+        writeByUserId(userId, eTag -> { }, outputStream);
+    }
+
+    @Override
+    public void writeByUserId(String userId, Consumer<String> eTagConsumer, OutputStream outputStream) throws NotFoundException, IOException {
+        var cachedWishlist = wishlistCache.get(userId);
+        if (cachedWishlist.isPresent()) {
+            var wishlist = cachedWishlist.get();
+            eTagConsumer.accept(eTagOf(wishlist));
+            writeJson(userId, wishlist.getVersion(), out -> wishlistJsonWriter.write(wishlist, out), outputStream);
+            return;
+        }
+
+        if (wishlistJsonCache.isEnabled()) {
+            // The version projection is enough to serve cached JSON, the document is only read when it is not cached.
+            var projected = wishlistRepository.findVersionByUserId(userId)
+                    .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+            if (projected.getVersion() != null) {
+                eTagConsumer.accept(eTagOf(projected));
+                if (wishlistJsonCache.writeTo(userId, projected.getVersion(), outputStream)) {
+                    return;
+                }
+            }
+        }
+
+        if (rawJsonEnabled) {
+            var document = wishlistRepository.findRawById(userId)
+                    .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+            var versionValue = document.get("version");
+            var version = versionValue != null && versionValue.isNumber() ? versionValue.asNumber().longValue() : null;
+            var updatedAt = document.get("updatedAt");
+            eTagConsumer.accept(eTagOf(version, updatedAt != null && updatedAt.isDateTime() ? updatedAt.asDateTime().getValue() : 0));
+            renderJson(userId, version, out -> wishlistJsonWriter.write(document, out), outputStream);
+            return;
+        }
+
+        var wishlist = wishlistRepository.findById(userId)
+                .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+        wishlistCache.put(wishlist);
+        eTagConsumer.accept(eTagOf(wishlist));
+        renderJson(userId, wishlist.getVersion(), out -> wishlistJsonWriter.write(wishlist, out), outputStream);
+    }
+
+    @Override
+    public String getETag(String userId) throws NotFoundException {
+        var wishlist = wishlistCache.get(userId)
+                .or(() -> wishlistRepository.findVersionByUserId(userId))
                 .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
 
-         return WishlistResponse.fromWishlist(wishlist);
+        return eTagOf(wishlist);
+    }
+
+    @Override
+    public WishlistChangesResponse getChanges(String userId, String since) throws NotFoundException, InvalidRequestException {
+        // A cursor is the "next" value of an earlier response: the version and updatedAt it was built from.
+        var cursorSeparator = since.indexOf(WishlistChangesResponse.CURSOR_SEPARATOR);
+        var versionPart = cursorSeparator >= 0 ? since.substring(0, cursorSeparator) : since;
+        var timePart = cursorSeparator >= 0 ? since.substring(cursorSeparator + 1) : since;
+
+        Long sinceVersion = null;
+        LocalDateTime sinceTime = null;
+        if (cursorSeparator >= 0 || (!since.isEmpty() && since.chars().allMatch(Character::isDigit))) {
+            sinceVersion = parseSinceVersion(versionPart, since);
+        }
+        if (sinceVersion == null || cursorSeparator >= 0) {
+            try {
+                sinceTime = LocalDateTime.parse(timePart);
+            } catch (DateTimeParseException ex) {
+                throw new InvalidRequestException("since must be the next cursor of a previous response, a wishlist version or an ISO-8601 local date-time: " + since);
+            }
+        }
+
+        // The near-cache is refreshed asynchronously by the change stream, so an "unchanged" answered from it could
+        // hide a write the client has not seen yet.
+        var wishlist = wishlistRepository.findById(userId)
+                .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+        wishlistCache.put(wishlist);
+
+        if (sinceVersion != null && sinceVersion.equals(wishlist.getVersion())) {
+            return WishlistChangesResponse.unchanged(wishlist);
+        }
+        if (sinceTime == null) {
+            // A bare older version can't be mapped to a point in time, a cursor carries one.
+            return WishlistChangesResponse.snapshot(wishlist);
+        }
+
+        // Products are stamped by the clock of the instance that wrote them, which may lag behind the one that stamped
+        // since, so changes are looked up a little earlier and may be reported again.
+        var lookupTime = sinceTime.minus(changesClockSkew);
+        var trimmedAt = wishlist.getRemovedProductsTrimmedAt();
+        if (trimmedAt != null && lookupTime.isBefore(trimmedAt)) {
+            return WishlistChangesResponse.snapshot(wishlist);
+        }
+        return WishlistChangesResponse.since(wishlist, lookupTime);
+    }
+
+    private static Long parseSinceVersion(String version, String since) throws InvalidRequestException {
+        if (version.isEmpty() || !version.chars().allMatch(Character::isDigit)) {
+            throw new InvalidRequestException("since cursor has an invalid version: " + since);
+        }
+        try {
+            return Long.valueOf(version);
+        } catch (NumberFormatException ex) {
+            throw new InvalidRequestException("since version is out of range: " + since);
+        }
     }
 
     @Override
@@ -82,39 +247,121 @@ public class WishlistServiceImpl implements WishlistService {
                 .orElseThrow(() -> new NotFoundException("Product not found in wishlist of user: "+userId));
 
         return wishlist.getProducts().stream()
-                .filter(product -> product.getProductId().equals(productId))
                 .findFirst()
                 .map(ProductResponse::fromProduct)
                 .orElseThrow(() -> new NotFoundException("Product not found in wishlist of user: " + userId));
     }
 
+    @Override
+    public ProductsContainsResponse containsProducts(String userId, List<String> productIds) throws NotFoundException {
+        var wishlist = wishlistCache.get(userId)
+                .or(() -> wishlistRepository.findProductIdsByUserId(userId))
+                .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
+
+        var wishedProductIds = wishlist.getProducts().stream()
+                .map(Product::getProductId)
+                .collect(Collectors.toSet());
+
+        return ProductsContainsResponse.of(userId, productIds, wishedProductIds);
+    }
+
     @Override
     public void removeProduct(String userId, String productId) throws NotFoundException {
-        var wishlist = wishlistRepository.findById(userId)
+        var wishlist = wishlistRepository.removeProduct(userId, productId);
+
+        if (wishlist.isEmpty()) {
+            if (!wishlistRepository.existsById(userId)) {
+                throw new NotFoundException("Wishlist not found to user: " + userId);
+            }
+            throw new NotFoundException("Product not found in wishlist!");
+        }
+        wishlistCache.put(wishlist.get());
+    }
+
+    @Override
+    public WishlistResponse updateProductQuantity(String userId, String productId, ProductQuantityRequest productQuantityRequest) throws MaxItemsException, NotFoundException {
+        var quantity = productQuantityRequest.getQuantity();
+        if (quantity != null && quantity > maxItem) {
+            throw maxItemsException();
+        }
+        var wishlist = wishlistRepository.updateProductQuantity(userId, productId, quantity,
+                productQuantityRequest.getDelta(), maxItem);
+
+        if (wishlist.isEmpty()) {
+            if (!wishlistRepository.existsById(userId)) {
+                throw new NotFoundException("Wishlist not found to user: " + userId);
+            }
+            if (wishlistRepository.findByUserIdAndProductId(userId, productId).isEmpty()) {
+                throw new NotFoundException("Product not found in wishlist!");
+            }
+            throw maxItemsException();
+        }
+        wishlistCache.put(wishlist.get());
+
+        return WishlistResponse.fromWishlist(wishlist.get());
+    }
+
+    @Override
+    public void clearProducts(String userId) throws NotFoundException {
+        var wishlist = wishlistRepository.clearProducts(userId)
                 .orElseThrow(() -> new NotFoundException("Wishlist not found to user: " + userId));
 
-        var productOpt = wishlist.getProducts().stream()
-                .filter(p -> p.getProductId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new NotFoundException("Product not found in wishlist!"));
+        wishlistCache.put(wishlist);
+    }
 
-        if (productOpt.getQuantity() > 1) {
-            productOpt.setQuantity(productOpt.getQuantity() - 1);
-            productOpt.setUpdatedAt(LocalDateTime.now());
-        } else {
-            wishlist.getProducts().remove(productOpt);
+    private WishlistResponse addedWishlist(String userId, Optional<Wishlist> wishlist) throws NotFoundException, MaxItemsException {
+        if (wishlist.isEmpty()) {
+            if (!wishlistRepository.existsById(userId)) {
+                throw new NotFoundException("Wishlist not found to user: " + userId);
+            }
+            throw maxItemsException();
         }
+        wishlistCache.put(wishlist.get());
 
-        wishlistRepository.save(wishlist);
+        return WishlistResponse.fromWishlist(wishlist.get());
     }
 
-    private void checkTotalQuantity(Wishlist wishlist) throws MaxItemsException {
-        int totalQuantity = wishlist.getProducts().stream()
-                .mapToInt(Product::getQuantity)
-                .sum();
+    private void writeJson(String userId, Long version, JsonWrite jsonWrite, OutputStream outputStream) throws IOException {
+        if (version != null && wishlistJsonCache.isEnabled() && wishlistJsonCache.writeTo(userId, version, outputStream)) {
+            return;
+        }
+        renderJson(userId, version, jsonWrite, outputStream);
+    }
 
-        if (totalQuantity > maxItem) {
-            throw new MaxItemsException("The total number of items on the wish list cannot exceed " + maxItem + ".");
+    private void renderJson(String userId, Long version, JsonWrite jsonWrite, OutputStream outputStream) throws IOException {
+        if (version == null || !wishlistJsonCache.isEnabled()) {
+            jsonWrite.writeTo(outputStream);
+            return;
         }
+
+        var json = new ByteArrayOutputStream();
+        jsonWrite.writeTo(json);
+        var bytes = json.toByteArray();
+        wishlistJsonCache.put(userId, version, bytes);
+        outputStream.write(bytes);
+    }
+
+    private static String eTagOf(Wishlist wishlist) {
+        var updatedAt = wishlist.getUpdatedAt() == null ? 0 : wishlist.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return eTagOf(wishlist.getVersion(), updatedAt);
+    }
+
+    private static String eTagOf(Long version, long updatedAtMillis) {
+        return "\"" + version + "-" + Long.toHexString(updatedAtMillis) + "\"";
+    }
+
+    private void checkTotalQuantity(Wishlist wishlist) throws MaxItemsException {
+        if (wishlist.getTotalQuantity() > maxItem) {
+            throw maxItemsException();
+        }
+    }
+
+    private MaxItemsException maxItemsException() {
+        return new MaxItemsException("The total number of items on the wish list cannot exceed " + maxItem + ".");
+    }
+
+    @FunctionalInterface
+    private interface JsonWrite {
+        void writeTo(OutputStream outputStream) throws IOException;
     }
 }
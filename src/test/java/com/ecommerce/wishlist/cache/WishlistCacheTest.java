@@ -0,0 +1,60 @@
+package com.ecommerce.wishlist.cache;
+
+import com.ecommerce.wishlist.mock.WishlistMock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WishlistCacheTest {
+
+    private final WishlistCache wishlistCache = new WishlistCache(100, 60);
+
+    @DisplayName("Given a cached wishlist"
+            + " when a wishlist with an older version is put"
+            + " then the cached wishlist should be kept")
+    @Test
+    public void shouldKeepNewerVersionOnStalePut() {
+        var fresh = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        fresh.setVersion(2L);
+        var stale = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        stale.setVersion(1L);
+
+        wishlistCache.put(fresh);
+        wishlistCache.put(stale);
+
+        assertEquals(2L, wishlistCache.get("123").get().getVersion());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when a wishlist with a newer version is put"
+            + " then the cached wishlist should be replaced")
+    @Test
+    public void shouldReplaceOlderVersionOnPut() {
+        var stale = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        stale.setVersion(1L);
+        var fresh = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        fresh.setVersion(2L);
+
+        wishlistCache.put(stale);
+        wishlistCache.put(fresh);
+
+        assertEquals(2L, wishlistCache.get("123").get().getVersion());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when it is invalidated"
+            + " then it should no longer be returned")
+    @Test
+    public void shouldRemoveWishlistOnInvalidate() {
+        wishlistCache.put(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+
+        wishlistCache.invalidate("123");
+
+        assertTrue(wishlistCache.get("123").isEmpty());
+        assertEquals(1, wishlistCache.stats().missCount());
+    }
+}
@@ -0,0 +1,147 @@
+package com.ecommerce.wishlist.cache;
+
+import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.bson.Document;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataMongoTest(properties = {
+        "spring.data.mongodb.uri=mongodb://localhost:12346/test?replicaSet=rs0",
+        "wishlist.cache.change.stream.enabled=true",
+        "wishlist.cache.change.stream.instance=test",
+        "wishlist.cache.change.stream.token.flush.ms=0",
+        "wishlist.json.cache.enabled=true"
+})
+@Import({WishlistCache.class, WishlistJsonCache.class, WishlistChangeStreamListener.class})
+public class WishlistChangeStreamListenerTest {
+    private static MongodExecutable mongodExecutable;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private WishlistCache wishlistCache;
+
+    @Autowired
+    private WishlistJsonCache wishlistJsonCache;
+
+    @Autowired
+    private WishlistChangeStreamListener listener;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        MongodStarter starter = MongodStarter.getDefaultInstance();
+        String bindIp = "localhost";
+        int port = 12346;
+        MongodConfig mongodConfig = MongodConfig.builder()
+                .version(Version.Main.PRODUCTION)
+                .net(new de.flapdoodle.embed.mongo.config.Net(bindIp, port, Network.localhostIsIPv6()))
+                .replication(new Storage(null, "rs0", 10))
+                .build();
+
+        mongodExecutable = starter.prepare(mongodConfig);
+        mongodExecutable.start();
+
+        try (var client = MongoClients.create("mongodb://localhost:12346/?directConnection=true")) {
+            var admin = client.getDatabase("admin");
+            admin.runCommand(new Document("replSetInitiate", new Document("_id", "rs0")
+                    .append("members", List.of(new Document("_id", 0).append("host", "localhost:12346")))));
+            await().atMost(Duration.ofSeconds(30)).until(() ->
+                    admin.runCommand(new Document("hello", 1)).getBoolean("isWritablePrimary", false));
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        mongodExecutable.stop();
+    }
+
+    @AfterEach
+    public void cleanDataBase() {
+        mongoTemplate.remove(new Query(), Wishlist.class);
+        wishlistCache.invalidateAll();
+        wishlistJsonCache.invalidateAll();
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when another instance updates it"
+            + " then the cached wishlist should be refreshed")
+    @Test
+    public void shouldRefreshCachedWishlistOnRemoteUpdate() {
+        var wishlist = mongoTemplate.insert(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        wishlistCache.put(wishlist);
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("userId").is("123")),
+                new Update().set("products.0.quantity", 5), Wishlist.class);
+
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() ->
+                assertEquals(5, wishlistCache.get("123").get().getProducts().get(0).getQuantity()));
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when another instance deletes it"
+            + " then the cached wishlist should be evicted")
+    @Test
+    public void shouldEvictCachedWishlistOnRemoteDelete() {
+        var wishlist = mongoTemplate.insert(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        wishlistCache.put(wishlist);
+
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is("123")), Wishlist.class);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> wishlistCache.get("123").isEmpty());
+    }
+
+    @DisplayName("Given a wishlist cached as JSON"
+            + " when another instance deletes it"
+            + " then the cached JSON should be evicted so a wishlist created again is not served from it")
+    @Test
+    public void shouldEvictCachedJsonOnRemoteDelete() throws Exception {
+        var wishlist = mongoTemplate.insert(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        wishlistJsonCache.put("123", wishlist.getVersion(), "{\"userId\":\"123\"}".getBytes());
+
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is("123")), Wishlist.class);
+
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                !wishlistJsonCache.writeTo("123", wishlist.getVersion(), new ByteArrayOutputStream()));
+    }
+
+    @DisplayName("Given a listener that was stopped"
+            + " when a wishlist changes while it is down and the listener restarts"
+            + " then the missed change should be replayed from the persisted resume token")
+    @Test
+    public void shouldReplayMissedChangesAfterRestart() {
+        var wishlist = mongoTemplate.insert(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                mongoTemplate.getCollection(WishlistChangeStreamListener.RESUME_TOKEN_COLLECTION).countDocuments() > 0);
+
+        listener.stop();
+        mongoTemplate.updateFirst(Query.query(Criteria.where("userId").is("123")),
+                new Update().set("products.0.quantity", 7), Wishlist.class);
+        wishlistCache.put(wishlist);
+        listener.start();
+
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() ->
+                assertEquals(7, wishlistCache.get("123").get().getProducts().get(0).getQuantity()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.ecommerce.wishlist.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WishlistJsonCacheTest {
+
+    private final WishlistJsonCache jsonCache = new WishlistJsonCache(true, 64, 32);
+
+    @DisplayName("Given cached JSON for a version"
+            + " when the same version is requested"
+            + " then the cached bytes should be written")
+    @Test
+    public void shouldWriteCachedBytesForSameVersion() throws Exception {
+        jsonCache.put("123", 1L, json("{\"userId\":\"123\"}"));
+        var outputStream = new ByteArrayOutputStream();
+
+        assertTrue(jsonCache.writeTo("123", 1L, outputStream));
+        assertEquals("{\"userId\":\"123\"}", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Given cached JSON for a version"
+            + " when another version is requested"
+            + " then nothing should be written")
+    @Test
+    public void shouldMissForOtherVersion() throws Exception {
+        jsonCache.put("123", 1L, json("{\"userId\":\"123\"}"));
+        var outputStream = new ByteArrayOutputStream();
+
+        assertFalse(jsonCache.writeTo("123", 2L, outputStream));
+        assertEquals(0, outputStream.size());
+    }
+
+    @DisplayName("Given cached JSON for a version"
+            + " when an older version is put"
+            + " then the newer version should be kept")
+    @Test
+    public void shouldKeepNewerVersionOnStalePut() throws Exception {
+        jsonCache.put("123", 2L, json("{\"v\":2}"));
+        jsonCache.put("123", 1L, json("{\"v\":1}"));
+
+        assertTrue(jsonCache.writeTo("123", 2L, new ByteArrayOutputStream()));
+        assertFalse(jsonCache.writeTo("123", 1L, new ByteArrayOutputStream()));
+    }
+
+    @DisplayName("Given the memory budget is used up"
+            + " when more JSON is put"
+            + " then the entries of the oldest slab should be evicted")
+    @Test
+    public void shouldEvictOldestSlabWhenBudgetIsUsed() throws Exception {
+        jsonCache.put("a", 1L, new byte[20]);
+        jsonCache.put("b", 1L, new byte[20]);
+        jsonCache.put("c", 1L, new byte[20]);
+
+        assertFalse(jsonCache.writeTo("a", 1L, new ByteArrayOutputStream()));
+        assertTrue(jsonCache.writeTo("b", 1L, new ByteArrayOutputStream()));
+        assertTrue(jsonCache.writeTo("c", 1L, new ByteArrayOutputStream()));
+        assertEquals(1, jsonCache.getEvictions());
+        assertTrue(jsonCache.usedBytes() <= 64);
+    }
+
+    @DisplayName("Given JSON larger than a slab"
+            + " when it is put"
+            + " then it should not be cached")
+    @Test
+    public void shouldSkipEntriesLargerThanSlab() throws Exception {
+        jsonCache.put("123", 1L, new byte[33]);
+
+        assertEquals(0, jsonCache.size());
+    }
+
+    @DisplayName("Given cached JSON larger than the scratch buffer"
+            + " when it is requested"
+            + " then all of its bytes should be written")
+    @Test
+    public void shouldWriteEntriesLargerThanScratchBuffer() throws Exception {
+        var largeCache = new WishlistJsonCache(true, 1 << 20, 1 << 20);
+        var large = new byte[200 * 1024];
+        large[large.length - 1] = 1;
+        largeCache.put("large", 1L, large);
+        largeCache.put("small", 1L, json("{}"));
+        var outputStream = new ByteArrayOutputStream();
+
+        assertTrue(largeCache.writeTo("large", 1L, outputStream));
+        assertArrayEquals(large, outputStream.toByteArray());
+        var smallOutputStream = new ByteArrayOutputStream();
+        assertTrue(largeCache.writeTo("small", 1L, smallOutputStream));
+        assertEquals("{}", smallOutputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Given a disabled cache"
+            + " when JSON is put"
+            + " then nothing should be cached")
+    @Test
+    public void shouldNotCacheWhenDisabled() throws Exception {
+        var disabled = new WishlistJsonCache(false, 64, 32);
+
+        disabled.put("123", 1L, json("{}"));
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.writeTo("123", 1L, new ByteArrayOutputStream()));
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
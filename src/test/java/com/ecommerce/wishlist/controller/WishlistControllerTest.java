@@ -1,16 +1,28 @@
 package com.ecommerce.wishlist.controller;
 
 import com.ecommerce.wishlist.exception.AlreadyExistsException;
+import com.ecommerce.wishlist.exception.ExportInProgressException;
+import com.ecommerce.wishlist.exception.InvalidRequestException;
 import com.ecommerce.wishlist.exception.ApiError;
 import com.ecommerce.wishlist.exception.MaxItemsException;
 import com.ecommerce.wishlist.exception.NotFoundException;
 import com.ecommerce.wishlist.mock.WishlistMock;
 import com.ecommerce.wishlist.response.ApiErrorResponse;
 import com.ecommerce.wishlist.response.ProductResponse;
+import com.ecommerce.wishlist.response.ProductsContainsResponse;
 import com.ecommerce.wishlist.response.ValidationErrorResponse;
+import com.ecommerce.wishlist.response.WishlistChangesResponse;
+import com.ecommerce.wishlist.response.WishlistExportResponse;
+import com.ecommerce.wishlist.response.WishlistImportResponse;
 import com.ecommerce.wishlist.response.WishlistResponse;
+import com.ecommerce.wishlist.resquest.ProductQuantityRequest;
 import com.ecommerce.wishlist.resquest.ProductRequest;
+import com.ecommerce.wishlist.resquest.ProductsContainsRequest;
 import com.ecommerce.wishlist.resquest.WishlistRequest;
+import com.ecommerce.wishlist.resquest.WishlistsRequest;
+import com.ecommerce.wishlist.service.WishlistBulkService;
+import com.ecommerce.wishlist.service.WishlistExportService;
+import com.ecommerce.wishlist.service.WishlistImportService;
 import com.ecommerce.wishlist.service.WishlistService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -20,16 +32,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.OutputStream;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static com.mongodb.assertions.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -42,6 +61,15 @@ public class WishlistControllerTest {
     @MockBean
     private WishlistService wishlistService;
 
+    @MockBean
+    private WishlistBulkService wishlistBulkService;
+
+    @MockBean
+    private WishlistImportService wishlistImportService;
+
+    @MockBean
+    private WishlistExportService wishlistExportService;
+
     ObjectMapper mapper = new ObjectMapper();
 
     @BeforeEach
@@ -169,7 +197,7 @@ public class WishlistControllerTest {
         var mockProduct = WishlistMock.getProductResponse(1);
         var mockWishlist = WishlistMock.getWishlistResponse(List.of(mockProduct));
 
-        when(wishlistService.getByUserId(anyString())).thenReturn(mockWishlist);
+        when(wishlistService.getByUserId(anyString(), any())).thenReturn(mockWishlist);
 
         var result = mockMvc.perform(get("/api/wishlist/{userId}", userId)
                         .contentType(MediaType.APPLICATION_JSON))
@@ -180,7 +208,90 @@ public class WishlistControllerTest {
         var actualWishlist = mapper.readValue(result.getResponse().getContentAsString(), WishlistResponse.class);
         assertEquals(mockWishlist, actualWishlist);
 
-        verify(wishlistService, times(1)).getByUserId(userId);
+        verify(wishlistService, times(1)).getByUserId(eq(userId), any());
+    }
+
+    @DisplayName("Given an existing wishlist"
+            + " when it is retrieved without If-None-Match"
+            + " then the response should carry the ETag of the returned wishlist without looking it up first")
+    @Test
+    public void shouldReturnETagWithWishlist() throws Exception {
+        var mockWishlist = WishlistMock.getWishlistResponse(List.of(WishlistMock.getProductResponse(1)));
+
+        when(wishlistService.getByUserId(eq("123"), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<String>>getArgument(1).accept("\"1-abc\"");
+            return mockWishlist;
+        });
+
+        mockMvc.perform(get("/api/wishlist/{userId}", "123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-abc\""))
+                .andExpect(jsonPath("$.userId").value("123"));
+
+        verify(wishlistService, never()).getETag(anyString());
+    }
+
+    @DisplayName("Given a client holding the current ETag"
+            + " when the wishlist is retrieved with If-None-Match"
+            + " then 304 should be returned without loading the wishlist")
+    @Test
+    public void shouldReturnNotModifiedWhenETagMatches() throws Exception {
+        when(wishlistService.getETag("123")).thenReturn("\"1-abc\"");
+
+        var result = mockMvc.perform(get("/api/wishlist/{userId}", "123")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-abc\""))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentLength());
+        verify(wishlistService, never()).getByUserId(anyString(), any());
+    }
+
+    @DisplayName("Given a client holding an outdated ETag"
+            + " when the wishlist is retrieved with If-None-Match"
+            + " then the current wishlist should be returned")
+    @Test
+    public void shouldReturnWishlistWhenETagIsOutdated() throws Exception {
+        var mockWishlist = WishlistMock.getWishlistResponse(List.of(WishlistMock.getProductResponse(1)));
+
+        when(wishlistService.getETag("123")).thenReturn("\"2-abd\"");
+        when(wishlistService.getByUserId(eq("123"), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<String>>getArgument(1).accept("\"3-abe\"");
+            return mockWishlist;
+        });
+
+        mockMvc.perform(get("/api/wishlist/{userId}", "123")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-abc\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-abe\""));
+    }
+
+    @DisplayName("Given a wishlist with changes"
+            + " when its changes since a point in time are requested"
+            + " then the changed and removed products are returned")
+    @Test
+    public void shouldReturnWishlistChanges() throws Exception {
+        var changes = new WishlistChangesResponse("123", 2L, null, false, List.of(WishlistMock.getProductResponse(1)), List.of("5678"), "2");
+
+        when(wishlistService.getChanges("123", "2024-01-01T12:00:00")).thenReturn(changes);
+
+        mockMvc.perform(get("/api/wishlist/{userId}/changes", "123").param("since", "2024-01-01T12:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.snapshot").value(false))
+                .andExpect(jsonPath("$.products[0].productId").value("1234"))
+                .andExpect(jsonPath("$.removedProductIds[0]").value("5678"));
+    }
+
+    @DisplayName("Given an invalid since value"
+            + " when the wishlist changes are requested"
+            + " then a bad request error is returned")
+    @Test
+    public void shouldReturnBadRequestWhenSinceIsInvalid() throws Exception {
+        when(wishlistService.getChanges("123", "yesterday")).thenThrow(new InvalidRequestException("invalid since"));
+
+        mockMvc.perform(get("/api/wishlist/{userId}/changes", "123").param("since", "yesterday"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.type").value("VALIDATION_ERROR"));
     }
 
     @DisplayName("Given a user ID"
@@ -190,7 +301,7 @@ public class WishlistControllerTest {
     public void shouldReturnErrorWhenNotFoundUserWishlist() throws Exception {
         var userId = "123";
 
-        when(wishlistService.getByUserId(anyString()))
+        when(wishlistService.getByUserId(anyString(), any()))
                 .thenThrow(new NotFoundException("Wishlist not found to user: "+userId));
 
         var expected = new ApiErrorResponse(
@@ -206,7 +317,7 @@ public class WishlistControllerTest {
         var actualError = mapper.readValue(result.getResponse().getContentAsString(), ApiErrorResponse.class);
         assertEquals(expected, actualError);
 
-        verify(wishlistService, times(1)).getByUserId(userId);
+        verify(wishlistService, times(1)).getByUserId(eq(userId), any());
     }
 
     @DisplayName("Given a user ID and a product ID"
@@ -414,4 +525,260 @@ public class WishlistControllerTest {
         // Verify
         verify(wishlistService, times(1)).removeProduct(userId, productId);
     }
+
+    @DisplayName("Given a user ID and a list of product IDs"
+            + " when checked which products are in the user's wishlist"
+            + " then the membership of each product is returned in request order")
+    @Test
+    public void shouldReturnProductsMembershipInRequestOrder() throws Exception {
+        var productIds = List.of("3", "1", "2");
+        var expected = ProductsContainsResponse.of("123", productIds, Set.of("1"));
+
+        when(wishlistService.containsProducts("123", productIds)).thenReturn(expected);
+
+        var result = mockMvc.perform(post("/api/wishlist/{userId}/products/contains", "123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new ProductsContainsRequest(productIds))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products.3").value(false))
+                .andExpect(jsonPath("$.products.1").value(true))
+                .andReturn();
+
+        assertTrue(result.getResponse().getContentAsString().contains("{\"3\":false,\"1\":true,\"2\":false}"));
+        verify(wishlistService, times(1)).containsProducts("123", productIds);
+    }
+
+    @DisplayName("Given more product IDs than allowed"
+            + " when checked which products are in the user's wishlist"
+            + " then it results in BadRequest")
+    @Test
+    public void shouldReturnBadRequestWhenTooManyProductIds() throws Exception {
+        var productIds = IntStream.range(0, ProductsContainsRequest.MAX_PRODUCT_IDS + 1)
+                .mapToObj(String::valueOf)
+                .toList();
+
+        mockMvc.perform(post("/api/wishlist/{userId}/products/contains", "123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new ProductsContainsRequest(productIds))))
+                .andExpect(status().isBadRequest());
+
+        verify(wishlistService, times(0)).containsProducts(anyString(), any());
+    }
+
+    @DisplayName("Given a valid list of products"
+            + " when a batch add request is made"
+            + " then the updated wishlist is returned")
+    @Test
+    public void shouldReturnSuccessWhenAddProductsInBatch() throws Exception {
+        var productRequests = List.of(WishlistMock.getProductRequest(1), new ProductRequest("5678", "outro", 2));
+        var mockWishlist = WishlistMock.getWishlistResponse(List.of(WishlistMock.getProductResponse(1)));
+
+        when(wishlistService.addProducts("123", productRequests)).thenReturn(mockWishlist);
+
+        mockMvc.perform(post("/api/wishlist/{userId}/products:batch", "123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(productRequests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value("123"));
+
+        verify(wishlistService, times(1)).addProducts("123", productRequests);
+    }
+
+    @DisplayName("Given a list with an invalid product"
+            + " when a batch add request is made"
+            + " then a validation error is returned and nothing is added")
+    @Test
+    public void shouldReturnBadRequestWhenBatchHasInvalidProduct() throws Exception {
+        var productRequests = List.of(WishlistMock.getProductRequest(1), new ProductRequest("", "outro", 2));
+
+        var result = mockMvc.perform(post("/api/wishlist/{userId}/products:batch", "123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(productRequests)))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        var error = mapper.readValue(result.getResponse().getContentAsString(), ValidationErrorResponse.class);
+        assertEquals(ApiError.VALIDATION_ERROR, error.getType());
+        assertEquals(1, error.getErrors().size());
+        verify(wishlistService, never()).addProducts(anyString(), any());
+    }
+
+    @DisplayName("Given an empty list of products"
+            + " when a batch add request is made"
+            + " then a validation error is returned")
+    @Test
+    public void shouldReturnBadRequestWhenBatchIsEmpty() throws Exception {
+        mockMvc.perform(post("/api/wishlist/{userId}/products:batch", "123")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.type").value("VALIDATION_ERROR"));
+
+        verify(wishlistService, never()).addProducts(anyString(), any());
+    }
+
+    @DisplayName("Given a list of user IDs"
+            + " when a bulk request is made"
+            + " then the wishlists are streamed as NDJSON")
+    @Test
+    public void shouldStreamWishlistsAsNdjson() throws Exception {
+        var userIds = List.of("123", "456");
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(1);
+            outputStream.write("{\"userId\":\"123\"}\n{\"userId\":\"456\",\"type\":\"NOT_FOUND\"}\n".getBytes());
+            return null;
+        }).when(wishlistBulkService).writeByUserIds(eq(userIds), any());
+
+        var result = mockMvc.perform(post("/api/wishlist/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new WishlistsRequest(userIds))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE))
+                .andReturn();
+
+        assertEquals(2, result.getResponse().getContentAsString().lines().count());
+    }
+
+    @DisplayName("Given too many user IDs"
+            + " when a bulk request is made"
+            + " then a validation error is returned")
+    @Test
+    public void shouldReturnBadRequestWhenTooManyUserIds() throws Exception {
+        var userIds = IntStream.rangeClosed(0, WishlistsRequest.MAX_USER_IDS).mapToObj(String::valueOf).toList();
+
+        mockMvc.perform(post("/api/wishlist/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new WishlistsRequest(userIds))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.type").value(ApiError.VALIDATION_ERROR.name()));
+
+        verify(wishlistBulkService, times(0)).writeByUserIds(any(), any());
+    }
+
+    @DisplayName("Given an NDJSON body of wishlists"
+            + " when an import request is made"
+            + " then the import summary is returned")
+    @Test
+    public void shouldReturnSummaryWhenImportWishlists() throws Exception {
+        when(wishlistImportService.importWishlists(any())).thenReturn(new WishlistImportResponse(2, 1, "wishlist-import-rejects-1.ndjson", 10, 200));
+
+        mockMvc.perform(post("/api/wishlist/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"userId\":\"123\",\"products\":[]}\n{\"userId\":\"456\",\"products\":[]}\n{\"userId\":\"\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejectFile").value("wishlist-import-rejects-1.ndjson"));
+
+        verify(wishlistImportService, times(1)).importWishlists(any());
+    }
+
+    @DisplayName("Given a wishlist collection"
+            + " when an export request is made"
+            + " then the export is started and its status returned as accepted")
+    @Test
+    public void shouldStartExportWhenExportWishlists() throws Exception {
+        var files = List.of("wishlist-export-0.ndjson.gz", "wishlist-export-1.ndjson.gz");
+        when(wishlistExportService.start()).thenReturn(new WishlistExportResponse(WishlistExportResponse.State.RUNNING,
+                LocalDateTime.now(), files, 0, true, 0, 0, null));
+
+        mockMvc.perform(post("/api/wishlist/export"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.files[0]").value("wishlist-export-0.ndjson.gz"))
+                .andExpect(jsonPath("$.resumed").value(true));
+    }
+
+    @DisplayName("Given a running export"
+            + " when another export request is made"
+            + " then a Conflict error is returned")
+    @Test
+    public void shouldReturnConflictWhenExportIsRunning() throws Exception {
+        when(wishlistExportService.start()).thenThrow(new ExportInProgressException("A wishlist export is already running"));
+
+        mockMvc.perform(post("/api/wishlist/export"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.type").value("EXPORT_IN_PROGRESS"));
+    }
+
+    @DisplayName("Given a finished export"
+            + " when its status is requested"
+            + " then the exported count and files are returned")
+    @Test
+    public void shouldReturnExportStatus() throws Exception {
+        var files = List.of("wishlist-export-0.ndjson.gz", "wishlist-export-1.ndjson.gz");
+        when(wishlistExportService.getStatus()).thenReturn(new WishlistExportResponse(WishlistExportResponse.State.COMPLETED,
+                LocalDateTime.now(), files, 100, false, 10, 10000, null));
+
+        mockMvc.perform(get("/api/wishlist/export/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.files.length()").value(2))
+                .andExpect(jsonPath("$.exported").value(100));
+        verify(wishlistService, never()).getByUserId(anyString(), any());
+    }
+
+    @DisplayName("Given a quantity for a product in the wishlist"
+            + " when a patch request is made"
+            + " then the updated wishlist is returned")
+    @Test
+    public void shouldReturnSuccessWhenSetProductQuantity() throws Exception {
+        var request = new ProductQuantityRequest(5, null);
+        var mockWishlist = WishlistMock.getWishlistResponse(List.of(WishlistMock.getProductResponse(5)));
+
+        when(wishlistService.updateProductQuantity("123", "1234", request)).thenReturn(mockWishlist);
+
+        mockMvc.perform(patch("/api/wishlist/{userId}/products/{productId}", "123", "1234")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].quantity").value(5));
+
+        verify(wishlistService, times(1)).updateProductQuantity("123", "1234", request);
+    }
+
+    @DisplayName("Given both a quantity and a delta"
+            + " when a patch request is made"
+            + " then a validation error is returned")
+    @Test
+    public void shouldReturnBadRequestWhenQuantityAndDeltaAreSet() throws Exception {
+        var result = mockMvc.perform(patch("/api/wishlist/{userId}/products/{productId}", "123", "1234")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new ProductQuantityRequest(5, -1))))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        var error = mapper.readValue(result.getResponse().getContentAsString(), ValidationErrorResponse.class);
+        assertEquals(ApiError.VALIDATION_ERROR, error.getType());
+        assertEquals(List.of("quantityOrDelta: Either quantity or delta must be set, but not both"), error.getErrors());
+        verify(wishlistService, times(0)).updateProductQuantity(any(), any(), any());
+    }
+
+    @DisplayName("Given a delta above the remaining room in the wishlist"
+            + " when a patch request is made"
+            + " then an error is returned indicating the maximum number of items")
+    @Test
+    public void shouldReturnErrorWhenDeltaExceedsMaxItems() throws Exception {
+        when(wishlistService.updateProductQuantity(any(), any(), any())).thenThrow(new MaxItemsException("The total number of items on the wish list cannot exceed 20."));
+
+        mockMvc.perform(patch("/api/wishlist/{userId}/products/{productId}", "123", "1234")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(new ProductQuantityRequest(null, 30))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.type").value(ApiError.MAX_ITEMS.name()));
+    }
+
+    @DisplayName("Given a wishlist with products"
+            + " when a request to clear it is made"
+            + " then all products are removed")
+    @Test
+    public void shouldReturnSuccessWhenClearProducts() throws Exception {
+        doNothing().when(wishlistService).clearProducts(any());
+
+        mockMvc.perform(delete("/api/wishlist/{userId}/products", "123"))
+                .andExpect(status().isOk());
+
+        verify(wishlistService, times(1)).clearProducts("123");
+    }
 }
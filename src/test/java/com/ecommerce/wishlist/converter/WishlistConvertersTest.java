@@ -0,0 +1,89 @@
+package com.ecommerce.wishlist.converter;
+
+import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.model.RemovedProduct;
+import com.ecommerce.wishlist.model.Wishlist;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class WishlistConvertersTest {
+
+    private final MappingMongoConverter defaultConverter = converter(new MongoCustomConversions(List.of()));
+
+    private final MappingMongoConverter customConverter = converter(new MongoCustomConversions(WishlistConverters.getConvertersToRegister()));
+
+    @DisplayName("Given a wishlist with products"
+            + " when it is written by the custom converters"
+            + " then the stored document should match the default mapping")
+    @Test
+    public void shouldWriteSameShapeAsDefaultMapping() {
+        var wishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(WishlistMock.getProduct(2))));
+        wishlist.setRemovedProducts(List.of(new RemovedProduct("5678", LocalDateTime.now())));
+        wishlist.setRemovedProductsTrimmedAt(LocalDateTime.now());
+
+        var expected = new Document();
+        defaultConverter.write(wishlist, expected);
+        var actual = new Document();
+        customConverter.write(wishlist, actual);
+
+        assertEquals(expected, actual);
+    }
+
+    @DisplayName("Given a document written by the default mapping"
+            + " when it is read by the custom converters"
+            + " then the wishlist should match the original")
+    @Test
+    public void shouldReadDocumentWrittenByDefaultMapping() {
+        var wishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(WishlistMock.getProduct(2))));
+        wishlist.setRemovedProducts(List.of(new RemovedProduct("5678", LocalDateTime.now())));
+        wishlist.setRemovedProductsTrimmedAt(LocalDateTime.now());
+        var document = new Document();
+        defaultConverter.write(wishlist, document);
+
+        var read = customConverter.read(Wishlist.class, document);
+
+        assertEquals(defaultConverter.read(Wishlist.class, document), read);
+    }
+
+    @DisplayName("Given a projected document without most fields"
+            + " when it is read by the custom converters"
+            + " then the missing fields should be null")
+    @Test
+    public void shouldReadProjectedDocument() {
+        var document = new Document("_id", "123")
+                .append("products", List.of(new Document("productId", "1234")));
+
+        var read = customConverter.read(Wishlist.class, document);
+
+        assertEquals("123", read.getUserId());
+        assertEquals("1234", read.getProducts().get(0).getProductId());
+        assertNull(read.getProducts().get(0).getQuantity());
+        assertNull(read.getCreatedAt());
+        assertNull(read.getTotalQuantity());
+        assertNull(read.getVersion());
+    }
+
+    private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+        var mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.setInitialEntitySet(Set.of(Wishlist.class));
+        mappingContext.afterPropertiesSet();
+        var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
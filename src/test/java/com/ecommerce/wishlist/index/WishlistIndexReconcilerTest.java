@@ -0,0 +1,97 @@
+package com.ecommerce.wishlist.index;
+
+import com.ecommerce.wishlist.model.Wishlist;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataMongoTest
+@Import(WishlistIndexReconciler.class)
+public class WishlistIndexReconcilerTest {
+    private static MongodExecutable mongodExecutable;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private WishlistIndexReconciler reconciler;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        MongodStarter starter = MongodStarter.getDefaultInstance();
+        String bindIp = "localhost";
+        int port = 12345;
+        MongodConfig mongodConfig = MongodConfig.builder()
+                .version(Version.Main.PRODUCTION)
+                .net(new de.flapdoodle.embed.mongo.config.Net(bindIp, port, Network.localhostIsIPv6()))
+                .build();
+
+        mongodExecutable = starter.prepare(mongodConfig);
+        mongodExecutable.start();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        mongodExecutable.stop();
+    }
+
+    @BeforeEach
+    public void dropIndexes() {
+        if (!mongoTemplate.collectionExists(Wishlist.class)) {
+            mongoTemplate.createCollection(Wishlist.class);
+        }
+        mongoTemplate.indexOps(Wishlist.class).dropAllIndexes();
+    }
+
+    @DisplayName("Given a collection without the declared indexes"
+            + " when the indexes are reconciled"
+            + " then the missing indexes should be created")
+    @Test
+    public void shouldCreateMissingIndexes() {
+        var result = reconciler.reconcile();
+
+        assertEquals(List.of("products_productId", "updatedAt"), result.created().stream().sorted().toList());
+        var indexes = mongoTemplate.indexOps(Wishlist.class).getIndexInfo().stream().map(IndexInfo::getName).toList();
+        assertTrue(indexes.containsAll(List.of("_id_", "products_productId", "updatedAt")));
+    }
+
+    @DisplayName("Given the declared indexes already exist"
+            + " when the indexes are reconciled again"
+            + " then nothing should be created")
+    @Test
+    public void shouldBeIdempotent() {
+        reconciler.reconcile();
+
+        var result = reconciler.reconcile();
+
+        assertTrue(result.created().isEmpty());
+    }
+
+    @DisplayName("Given an index that is not declared on the model"
+            + " when the indexes are reconciled"
+            + " then it should be reported as unexpected and unused")
+    @Test
+    public void shouldReportUnexpectedIndexes() {
+        mongoTemplate.indexOps(Wishlist.class).ensureIndex(new Index("totalQuantity", Sort.Direction.ASC).named("totalQuantity"));
+
+        var result = reconciler.reconcile();
+
+        assertEquals(List.of("totalQuantity"), result.unexpected());
+        assertTrue(result.unused().contains("totalQuantity"));
+    }
+}
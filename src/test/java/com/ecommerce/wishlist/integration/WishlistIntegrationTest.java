@@ -1,14 +1,17 @@
 package com.ecommerce.wishlist.integration;
 
+import com.ecommerce.wishlist.cache.WishlistCache;
 import com.ecommerce.wishlist.exception.ApiError;
 import com.ecommerce.wishlist.mock.WishlistMock;
 import com.ecommerce.wishlist.model.Product;
 import com.ecommerce.wishlist.model.Wishlist;
 import com.ecommerce.wishlist.repository.WishlistRepository;
 import com.ecommerce.wishlist.response.ApiErrorResponse;
+import com.ecommerce.wishlist.response.ProductsContainsResponse;
 import com.ecommerce.wishlist.response.ValidationErrorResponse;
 import com.ecommerce.wishlist.response.WishlistResponse;
 import com.ecommerce.wishlist.resquest.ProductRequest;
+import com.ecommerce.wishlist.resquest.ProductsContainsRequest;
 import com.ecommerce.wishlist.resquest.WishlistRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -22,10 +25,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.mongodb.assertions.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -45,6 +54,9 @@ public class WishlistIntegrationTest {
     @Autowired
     private WishlistRepository wishlistRepository;
 
+    @Autowired
+    private WishlistCache wishlistCache;
+
     @BeforeAll
     public static void setUp() throws Exception {
         MongodStarter starter = MongodStarter.getDefaultInstance();
@@ -67,6 +79,7 @@ public class WishlistIntegrationTest {
     @AfterEach
     public void cleanDataBase() {
         wishlistRepository.deleteAll();
+        wishlistCache.invalidateAll();
     }
 
     @DisplayName("Given a valid wishlist and product request"
@@ -235,6 +248,30 @@ public class WishlistIntegrationTest {
         assertEquals(productExpected.getCreatedAt().getHour(), product.getCreatedAt().getHour());
     }
 
+    @DisplayName("Given an existing wishlist and its ETag"
+            + " when it is retrieved with If-None-Match before and after a change"
+            + " then 304 should be returned until the wishlist changes")
+    @Test
+    public void shouldReturnNotModifiedUntilWishlistChanges() {
+        var wishlistRequest = WishlistMock.getWishlitRequest(List.of(WishlistMock.getProductRequest(1)));
+        restTemplate.postForEntity("/api/wishlist", wishlistRequest, WishlistResponse.class);
+
+        var eTag = restTemplate.getForEntity("/api/wishlist/123", WishlistResponse.class).getHeaders().getETag();
+        var headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        var notModified = restTemplate.exchange("/api/wishlist/123", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        restTemplate.postForEntity("/api/wishlist/123/products", WishlistMock.getProductRequest(1), WishlistResponse.class);
+        var modified = restTemplate.exchange("/api/wishlist/123", HttpMethod.GET, new HttpEntity<>(headers), WishlistResponse.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(2, modified.getBody().getProducts().get(0).getQuantity());
+        assertTrue(!eTag.equals(modified.getHeaders().getETag()));
+    }
+
     @DisplayName("Given a user ID and a product ID"
             + " when checked if the product is in the user's wishlist"
             + " then the product details are successfully returned if present in the wishlist")
@@ -501,4 +538,79 @@ public class WishlistIntegrationTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertEquals(errorDtoExpected, errorDto);
     }
+
+    @DisplayName("Given a product with quantity ten in the wishlist"
+            + " when ten deletion requests are made concurrently"
+            + " then all of them should succeed and the product should be removed")
+    @Test
+    public void shouldDeleteProductConcurrentlySuccessfully() throws Exception {
+        var productRequest = WishlistMock.getProductRequest(10);
+        var wishlistRequest = WishlistMock.getWishlitRequest(List.of(productRequest));
+
+        restTemplate.postForEntity("/api/wishlist", wishlistRequest, WishlistResponse.class);
+
+        var executor = Executors.newFixedThreadPool(10);
+        var responses = new ArrayList<Future<HttpStatusCode>>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(executor.submit(() -> restTemplate
+                    .exchange("/api/wishlist/123/products/1234", HttpMethod.DELETE, null, Void.class)
+                    .getStatusCode()));
+        }
+        for (var response : responses) {
+            assertEquals(HttpStatus.OK, response.get());
+        }
+        executor.shutdown();
+
+        var wishlist = wishlistRepository.findById("123").get();
+
+        assertTrue(wishlist.getProducts().isEmpty());
+        assertEquals(0, wishlist.getTotalQuantity());
+    }
+
+    @DisplayName("Given a wishlist with a product"
+            + " when checked which of a list of products are in the wishlist"
+            + " then the membership of each product is returned in request order")
+    @Test
+    public void shouldReturnProductsMembershipSuccessfully() {
+        var productRequest = WishlistMock.getProductRequest(1);
+        var wishlistRequest = WishlistMock.getWishlitRequest(List.of(productRequest));
+
+        restTemplate.postForEntity("/api/wishlist", wishlistRequest, WishlistResponse.class);
+
+        var response = restTemplate.postForEntity("/api/wishlist/123/products/contains",
+                new ProductsContainsRequest(List.of("999", "1234")), ProductsContainsResponse.class);
+
+        var membership = response.getBody().getProducts();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of("999", "1234"), new ArrayList<>(membership.keySet()));
+        assertEquals(false, membership.get("999"));
+        assertEquals(true, membership.get("1234"));
+    }
+
+    @DisplayName("Given several concurrent creation requests for the same user"
+            + " when they are made at the same time"
+            + " then exactly one should be created and the others should conflict")
+    @Test
+    public void shouldCreateWishlistOnceUnderConcurrentRequests() throws Exception {
+        var productRequest = WishlistMock.getProductRequest(1);
+        var wishlistRequest = WishlistMock.getWishlitRequest(List.of(productRequest));
+
+        var executor = Executors.newFixedThreadPool(8);
+        var responses = new ArrayList<Future<HttpStatusCode>>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(executor.submit(() -> restTemplate
+                    .postForEntity("/api/wishlist", wishlistRequest, ApiErrorResponse.class)
+                    .getStatusCode()));
+        }
+        var statuses = new ArrayList<HttpStatusCode>();
+        for (var response : responses) {
+            statuses.add(response.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, statuses.stream().filter(HttpStatus.CREATED::equals).count());
+        assertEquals(7, statuses.stream().filter(HttpStatus.CONFLICT::equals).count());
+        assertEquals(1, wishlistRepository.count());
+    }
 }
@@ -0,0 +1,238 @@
+package com.ecommerce.wishlist.loadtest;
+
+import com.ecommerce.wishlist.cache.WishlistCache;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.AutoConfigureDataMongo;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Open-loop load test: requests are issued on a fixed schedule at the target rate and latency is measured from the
+ * scheduled start, so a slow server can't hide its queueing delay (coordinated omission). Run with
+ * {@code ./mvnw -Ploadtest test}; tune with {@code -Dloadtest.rps}, {@code -Dloadtest.duration.seconds} and
+ * {@code -Dloadtest.users}. The report is printed and written to {@code target/loadtest-report.json}.
+ */
+@Tag("load")
+@AutoConfigureDataMongo
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class WishlistLoadTest {
+
+    private static final int RPS = Integer.getInteger("loadtest.rps", 200);
+
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration.seconds", 30);
+
+    private static final int USERS = Integer.getInteger("loadtest.users", 1000);
+
+    private static final int PRODUCTS = 50;
+
+    private static MongodExecutable mongodExecutable;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private WishlistCache wishlistCache;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(32))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final AtomicInteger createdUsers = new AtomicInteger();
+
+    enum Operation {
+        CREATE(10), ADD(30), GET(35), CONTAINS(15), REMOVE(10);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick(int roll) {
+            for (var operation : values()) {
+                roll -= operation.weight;
+                if (roll < 0) {
+                    return operation;
+                }
+            }
+            return GET;
+        }
+    }
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        MongodStarter starter = MongodStarter.getDefaultInstance();
+        String bindIp = "localhost";
+        int port = 12345;
+        MongodConfig mongodConfig = MongodConfig.builder()
+                .version(Version.Main.PRODUCTION)
+                .net(new de.flapdoodle.embed.mongo.config.Net(bindIp, port, Network.localhostIsIPv6()))
+                .build();
+
+        mongodExecutable = starter.prepare(mongodConfig);
+        mongodExecutable.start();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        mongodExecutable.stop();
+    }
+
+    @AfterEach
+    public void cleanDataBase() {
+        wishlistRepository.deleteAll();
+        wishlistCache.invalidateAll();
+    }
+
+    @DisplayName("Given a realistic mix of wishlist operations across many users"
+            + " when they are issued at the target rate"
+            + " then no request should fail with a server error")
+    @Test
+    public void shouldSustainTargetRateWithoutServerErrors() throws Exception {
+        for (int user = 0; user < USERS; user++) {
+            send(createRequest("load-user-" + user)).join();
+        }
+
+        var latencies = new EnumMap<Operation, Histogram>(Operation.class);
+        var serverErrors = new EnumMap<Operation, AtomicLong>(Operation.class);
+        for (var operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(TimeUnit.SECONDS.toMicros(60), 3));
+            serverErrors.put(operation, new AtomicLong());
+        }
+
+        long totalRequests = (long) RPS * DURATION_SECONDS;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RPS;
+        var inFlight = new ArrayList<CompletableFuture<?>>();
+        long start = System.nanoTime();
+
+        for (long i = 0; i < totalRequests; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            var operation = Operation.pick(ThreadLocalRandom.current().nextInt(100));
+            inFlight.add(send(request(operation)).whenComplete((response, error) -> {
+                latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt));
+                if (error != null || response.statusCode() >= 500) {
+                    serverErrors.get(operation).incrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> null)
+                .get(60, TimeUnit.SECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        var report = report(latencies, serverErrors, elapsedSeconds);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(Path.of("target", "loadtest-report.json").toFile(), report);
+
+        assertTrue(latencies.values().stream().mapToLong(Histogram::getTotalCount).sum() > 0);
+        assertEquals(0, serverErrors.values().stream().mapToLong(AtomicLong::get).sum());
+    }
+
+    private Map<String, Object> report(Map<Operation, Histogram> latencies, Map<Operation, AtomicLong> serverErrors, double elapsedSeconds) {
+        var report = new LinkedHashMap<String, Object>();
+        report.put("targetRps", RPS);
+        report.put("durationSeconds", elapsedSeconds);
+        report.put("users", USERS);
+
+        System.out.printf("%n%-10s %10s %10s %10s %10s %10s %10s %8s%n", "operation", "count", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "5xx");
+        var operations = new LinkedHashMap<String, Object>();
+        for (var operation : Operation.values()) {
+            var histogram = latencies.get(operation);
+            var stats = new LinkedHashMap<String, Object>();
+            stats.put("count", histogram.getTotalCount());
+            stats.put("throughput", histogram.getTotalCount() / elapsedSeconds);
+            stats.put("p50Ms", histogram.getValueAtPercentile(50) / 1000.0);
+            stats.put("p99Ms", histogram.getValueAtPercentile(99) / 1000.0);
+            stats.put("p999Ms", histogram.getValueAtPercentile(99.9) / 1000.0);
+            stats.put("maxMs", histogram.getMaxValue() / 1000.0);
+            stats.put("serverErrors", serverErrors.get(operation).get());
+            operations.put(operation.name(), stats);
+
+            System.out.printf("%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n", operation, histogram.getTotalCount(),
+                    stats.get("throughput"), stats.get("p50Ms"), stats.get("p99Ms"), stats.get("p999Ms"), stats.get("maxMs"),
+                    serverErrors.get(operation).get());
+        }
+        report.put("operations", operations);
+        return report;
+    }
+
+    private HttpRequest request(Operation operation) {
+        var random = ThreadLocalRandom.current();
+        var userId = "load-user-" + random.nextInt(USERS);
+        var productId = "product-" + random.nextInt(PRODUCTS);
+
+        return switch (operation) {
+            case CREATE -> createRequest("load-new-user-" + createdUsers.incrementAndGet());
+            case ADD -> post("/api/wishlist/" + userId + "/products", productJson(productId));
+            case GET -> HttpRequest.newBuilder(uri("/api/wishlist/" + userId)).GET().build();
+            case CONTAINS -> post("/api/wishlist/" + userId + "/products/contains",
+                    "{\"productIds\":[\"product-" + random.nextInt(PRODUCTS) + "\",\"product-" + random.nextInt(PRODUCTS)
+                            + "\",\"product-" + random.nextInt(PRODUCTS) + "\"]}");
+            case REMOVE -> HttpRequest.newBuilder(uri("/api/wishlist/" + userId + "/products/" + productId)).DELETE().build();
+        };
+    }
+
+    private HttpRequest createRequest(String userId) {
+        return post("/api/wishlist", "{\"userId\":\"" + userId + "\",\"products\":[" + productJson("product-0") + "]}");
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String productJson(String productId) {
+        return "{\"productId\":\"" + productId + "\",\"productName\":\"Product\",\"quantity\":1}";
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private CompletableFuture<HttpResponse<Void>> send(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+}
@@ -0,0 +1,125 @@
+package com.ecommerce.wishlist.metrics;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MongoCommandMetricsListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final MongoCommandMetricsListener listener = new MongoCommandMetricsListener(registry, 1);
+
+    private final ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    @DisplayName("Given a successful find command"
+            + " when its events are received"
+            + " then latency, sizes and result count should be recorded by command and collection")
+    @Test
+    public void shouldRecordSuccessfulCommand() {
+        var command = new BsonDocument("find", new BsonString("wishlist"))
+                .append("filter", new BsonDocument("_id", new BsonString("123")));
+        var response = new BsonDocument("cursor", new BsonDocument("firstBatch", new BsonArray(List.of(
+                new BsonDocument("_id", new BsonString("123"))))))
+                .append("ok", new BsonInt32(1));
+
+        listener.commandStarted(new CommandStartedEvent(null, 1, 1, connection, "test", "find", command));
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 1, connection, "test", "find", response, TimeUnit.MILLISECONDS.toNanos(5)));
+
+        var timer = registry.get("wishlist.mongo.command")
+                .tags("command", "find", "collection", "wishlist", "status", "success")
+                .timer();
+        assertEquals(1, timer.count());
+        assertEquals(5, timer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("wishlist.mongo.command.results").tags("command", "find").summary().totalAmount());
+        assertTrue(registry.get("wishlist.mongo.command.request.size").tags("command", "find").summary().totalAmount() > 0);
+        assertTrue(registry.get("wishlist.mongo.command.response.size").tags("command", "find").summary().totalAmount() > 0);
+    }
+
+    @DisplayName("Given a failed update command"
+            + " when its events are received"
+            + " then its latency should be recorded as a failure")
+    @Test
+    public void shouldRecordFailedCommand() {
+        var command = new BsonDocument("update", new BsonString("wishlist"));
+
+        listener.commandStarted(new CommandStartedEvent(null, 2, 2, connection, "test", "update", command));
+        listener.commandFailed(new CommandFailedEvent(null, 2, 2, connection, "test", "update", 1000, new RuntimeException()));
+
+        assertEquals(1, registry.get("wishlist.mongo.command")
+                .tags("command", "update", "collection", "wishlist", "status", "failure")
+                .timer()
+                .count());
+    }
+
+    @DisplayName("Given command responses of different shapes"
+            + " when the result count is computed"
+            + " then it should count returned or affected documents and walk cursor batches only when asked to")
+    @Test
+    public void shouldCountResults() {
+        var cursor = new BsonDocument("cursor", new BsonDocument("nextBatch", new BsonArray(List.of(new BsonDocument(), new BsonDocument()))));
+
+        assertEquals(1, MongoCommandMetricsListener.resultCount(new BsonDocument("value", new BsonDocument()), false));
+        assertEquals(3, MongoCommandMetricsListener.resultCount(new BsonDocument("n", new BsonInt32(3)), false));
+        assertEquals(0, MongoCommandMetricsListener.resultCount(new BsonDocument("ok", new BsonInt32(1)), false));
+        assertEquals(2, MongoCommandMetricsListener.resultCount(cursor, true));
+        assertEquals(-1, MongoCommandMetricsListener.resultCount(cursor, false));
+    }
+
+    @DisplayName("Given several commands with the same name, collection and outcome"
+            + " when their events are received"
+            + " then they should be recorded on the same meters")
+    @Test
+    public void shouldReuseMeters() {
+        var command = new BsonDocument("update", new BsonString("wishlist"));
+        var response = new BsonDocument("n", new BsonInt32(1)).append("ok", new BsonInt32(1));
+
+        for (int requestId = 10; requestId < 13; requestId++) {
+            listener.commandStarted(new CommandStartedEvent(null, requestId, requestId, connection, "test", "update", command));
+            listener.commandSucceeded(new CommandSucceededEvent(null, requestId, requestId, connection, "test", "update", response, 1000));
+        }
+
+        var timers = registry.find("wishlist.mongo.command").tags("command", "update").timers();
+        assertEquals(1, timers.size());
+        assertEquals(3, timers.iterator().next().count());
+        assertEquals(3, registry.get("wishlist.mongo.command.results").tags("command", "update").summary().totalAmount());
+    }
+
+    @DisplayName("Given a raw response and a command that is not sampled"
+            + " when their events are received"
+            + " then the response size should be read from its bytes and the command size skipped")
+    @Test
+    public void shouldMeasureRawDocumentsOnly() {
+        var unsampledListener = new MongoCommandMetricsListener(registry, 0);
+        var command = new BsonDocument("find", new BsonString("wishlist"));
+        var response = new RawBsonDocument(new BsonDocument("cursor", new BsonDocument("firstBatch", new BsonArray()))
+                .append("ok", new BsonInt32(1)), new BsonDocumentCodec());
+
+        unsampledListener.commandStarted(new CommandStartedEvent(null, 3, 3, connection, "test", "find", command));
+        unsampledListener.commandSucceeded(new CommandSucceededEvent(null, 3, 3, connection, "test", "find", response, 1000));
+
+        assertEquals(response.getByteBuffer().remaining(),
+                registry.get("wishlist.mongo.command.response.size").tags("command", "find").summary().totalAmount());
+        assertNull(registry.find("wishlist.mongo.command.request.size").tags("command", "find").summary());
+    }
+}
@@ -0,0 +1,180 @@
+package com.ecommerce.wishlist.metrics;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlowCommandListenerTest {
+
+    private final ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private final List<Document> explained = new ArrayList<>();
+
+    private final SlowCommandListener listener = new SlowCommandListener((database, command) -> {
+        explained.add(command);
+        return new Document("queryPlanner", new Document("winningPlan", new Document("stage", "IDHACK")))
+                .append("executionStats", new Document("nReturned", 1).append("totalKeysExamined", 1).append("totalDocsExamined", 1));
+    }, Runnable::run, 100, 300, 10, 100, 2);
+
+    @DisplayName("Given a command faster than the threshold"
+            + " when it succeeds"
+            + " then it should be neither recorded nor explained")
+    @Test
+    public void shouldIgnoreFastCommand() {
+        execute(1, find("123"), 5);
+
+        assertTrue(listener.getSlowCommands().isEmpty());
+        assertTrue(explained.isEmpty());
+    }
+
+    @DisplayName("Given slow commands with the same shape and different values"
+            + " when they succeed"
+            + " then all should be grouped by shape from the first one and a later copy explained only once")
+    @Test
+    public void shouldExplainSlowCommandOncePerShape() {
+        execute(1, find("123"), 150);
+
+        assertEquals(1, listener.getSlowCommands().size());
+        assertTrue(explained.isEmpty());
+
+        execute(2, find("456"), 250);
+        execute(3, find("789"), 200);
+
+        assertEquals(1, listener.getSlowCommands().size());
+        var slowCommand = listener.getSlowCommands().iterator().next();
+        assertEquals("find", slowCommand.getCommandName());
+        assertEquals(3, slowCommand.getCount());
+        assertEquals(250, slowCommand.getMaxMillis());
+        assertFalse(slowCommand.getShape().contains("123"));
+        assertEquals("IDHACK", slowCommand.getPlanSummary().get("winningPlan", Document.class).getString("stage"));
+
+        assertEquals(1, explained.size());
+        assertEquals("executionStats", explained.get(0).getString("verbosity"));
+        var explainedCommand = explained.get(0).get("explain", Document.class);
+        assertEquals("wishlist", explainedCommand.getString("find"));
+        assertEquals("456", explainedCommand.get("filter", Document.class).getString("_id"));
+        assertFalse(explainedCommand.containsKey("$db"));
+        assertFalse(explainedCommand.containsKey("lsid"));
+    }
+
+    @DisplayName("Given commands of a shape without slow commands"
+            + " when they start"
+            + " then they should not be copied until a slow one arms the shape and only for a bounded number of commands")
+    @Test
+    public void shouldCopyCommandsOfArmedShapesOnly() {
+        var clones = new AtomicInteger();
+        Function<String, BsonDocument> command = field -> new BsonDocument("find", new BsonString("wishlist")) {
+            @Override
+            public BsonDocument clone() {
+                clones.incrementAndGet();
+                return super.clone();
+            }
+        }.append("filter", new BsonDocument(field, new BsonString("value")));
+
+        execute(1, command.apply("_id"), 5);
+        execute(2, command.apply("_id"), 150);
+        assertEquals(0, clones.get());
+
+        execute(3, command.apply("products.id"), 5);
+        execute(4, command.apply("_id"), 5);
+        execute(5, command.apply("_id"), 5);
+        execute(6, command.apply("_id"), 150);
+        assertEquals(2, clones.get());
+        assertTrue(explained.isEmpty());
+
+        execute(7, command.apply("_id"), 150);
+        execute(8, command.apply("_id"), 5);
+
+        assertEquals(3, clones.get());
+        assertEquals(1, explained.size());
+        assertEquals(3, listener.getSlowCommands().iterator().next().getCount());
+    }
+
+    @DisplayName("Given more slow shapes than the explain rate limit"
+            + " when they succeed"
+            + " then all should be logged by shape but only the allowed number of explains run")
+    @Test
+    public void shouldRateLimitExplains() {
+        var limited = new SlowCommandListener((database, command) -> {
+            explained.add(command);
+            return new Document();
+        }, Runnable::run, 100, 300, 2, 100, 10);
+
+        for (int i = 0; i < 10; i++) {
+            var command = new BsonDocument("find", new BsonString("collection" + i / 2))
+                    .append("filter", new BsonDocument("field", new BsonString("value")));
+            limited.commandStarted(new CommandStartedEvent(null, i, i, connection, "test", "find", command));
+            limited.commandSucceeded(new CommandSucceededEvent(null, i, i, connection, "test", "find",
+                    new BsonDocument("ok", new BsonInt32(1)), TimeUnit.MILLISECONDS.toNanos(200)));
+        }
+
+        assertEquals(5, limited.getSlowCommands().size());
+        assertEquals(2, explained.size());
+    }
+
+    @DisplayName("Given an update command with values"
+            + " when its shape is computed"
+            + " then values should be masked while keys and operators are kept")
+    @Test
+    public void shouldMaskValuesInShape() {
+        var command = new BsonDocument("update", new BsonString("wishlist"))
+                .append("updates", new BsonArray(List.of(new BsonDocument("q", new BsonDocument("_id", new BsonString("123")))
+                        .append("u", new BsonDocument("$set", new BsonDocument("totalQuantity", new BsonInt32(3)))))))
+                .append("$db", new BsonString("test"));
+
+        assertEquals("{\"update\": \"wishlist\", \"updates\": [{\"q\": {\"_id\": \"?\"}, \"u\": {\"$set\": {\"totalQuantity\": \"?\"}}}]}",
+                SlowCommandListener.shapeOf(command).toJson());
+    }
+
+    @DisplayName("Given commands with the same keys and operators but different values"
+            + " when their fingerprints are computed"
+            + " then they should be equal unless the shape differs")
+    @Test
+    public void shouldFingerprintShapes() {
+        var inThree = new BsonDocument("find", new BsonString("wishlist"))
+                .append("filter", new BsonDocument("_id", new BsonDocument("$in", new BsonArray(List.of(new BsonString("1"), new BsonString("2"), new BsonString("3"))))));
+        var inOne = new BsonDocument("find", new BsonString("wishlist"))
+                .append("filter", new BsonDocument("_id", new BsonDocument("$in", new BsonArray(List.of(new BsonString("4"))))))
+                .append("$db", new BsonString("test"));
+
+        assertEquals(SlowCommandListener.fingerprintOf(find("123")), SlowCommandListener.fingerprintOf(find("456")));
+        assertEquals(SlowCommandListener.fingerprintOf(inThree), SlowCommandListener.fingerprintOf(inOne));
+        assertNotEquals(SlowCommandListener.fingerprintOf(find("123")), SlowCommandListener.fingerprintOf(inOne));
+        assertNotEquals(SlowCommandListener.fingerprintOf(find("123")),
+                SlowCommandListener.fingerprintOf(find("123").append("find", new BsonString("other"))));
+    }
+
+    private BsonDocument find(String userId) {
+        return new BsonDocument("find", new BsonString("wishlist"))
+                .append("filter", new BsonDocument("_id", new BsonString(userId)))
+                .append("$db", new BsonString("test"))
+                .append("lsid", new BsonDocument("id", new BsonString("session")));
+    }
+
+    private void execute(int requestId, BsonDocument command, long elapsedMillis) {
+        listener.commandStarted(new CommandStartedEvent(null, requestId, requestId, connection, "test", "find", command));
+        listener.commandSucceeded(new CommandSucceededEvent(null, requestId, requestId, connection, "test", "find",
+                new BsonDocument("ok", new BsonInt32(1)), TimeUnit.MILLISECONDS.toNanos(elapsedMillis)));
+    }
+}
@@ -18,6 +18,9 @@ public class WishlistMock {
                 LocalDateTime.now(),
                 LocalDateTime.now(),
                 products,
+                products.stream().mapToInt(Product::getQuantity).sum(),
+                null,
+                null,
                 0L
         );
     }
@@ -0,0 +1,272 @@
+package com.ecommerce.wishlist.repository;
+
+import com.ecommerce.wishlist.metrics.SlowCommandListener;
+import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Explains every command issued by {@link WishlistRepository} against a seeded collection and fails when a query
+ * stops using an index, e.g. a {@code @Query} filtering on a field that no longer maps to {@code _id}.
+ */
+@DataMongoTest
+@Import(WishlistQueryPlanTest.CommandCaptureConfig.class)
+public class WishlistQueryPlanTest {
+
+    private static final int SEEDED_WISHLISTS = 200;
+
+    private static final List<BsonDocument> capturedCommands = new CopyOnWriteArrayList<>();
+
+    private static MongodExecutable mongodExecutable;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        MongodStarter starter = MongodStarter.getDefaultInstance();
+        String bindIp = "localhost";
+        int port = 12345;
+        MongodConfig mongodConfig = MongodConfig.builder()
+                .version(Version.Main.PRODUCTION)
+                .net(new de.flapdoodle.embed.mongo.config.Net(bindIp, port, Network.localhostIsIPv6()))
+                .build();
+
+        mongodExecutable = starter.prepare(mongodConfig);
+        mongodExecutable.start();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        mongodExecutable.stop();
+    }
+
+    @BeforeEach
+    public void seedDataBase() {
+        wishlistRepository.insert(IntStream.range(0, SEEDED_WISHLISTS)
+                .mapToObj(this::seededWishlist)
+                .toList());
+        capturedCommands.clear();
+    }
+
+    @AfterEach
+    public void cleanDataBase() {
+        wishlistRepository.deleteAll();
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a wishlist is found by id"
+            + " then the query should use the _id index")
+    @Test
+    public void findByIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.findById("user-42"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a wishlist existence is checked"
+            + " then the query should use the _id index")
+    @Test
+    public void existsByIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.existsById("user-42"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a product is looked up in a wishlist"
+            + " then the query should use the _id index")
+    @Test
+    public void findByUserIdAndProductIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.findByUserIdAndProductId("user-42", "product-1"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when the product ids of a wishlist are projected"
+            + " then the query should use the _id index")
+    @Test
+    public void findProductIdsByUserIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.findProductIdsByUserId("user-42"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when the version of a wishlist is projected"
+            + " then the query should use the _id index")
+    @Test
+    public void findVersionByUserIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.findVersionByUserId("user-42"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a product is added atomically"
+            + " then the update should use the _id index")
+    @Test
+    public void addProductShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.addProduct("user-42", WishlistMock.getProduct(1), 20));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a batch of products is added atomically"
+            + " then the update should use the _id index")
+    @Test
+    public void addProductsShouldUseIndex() {
+        var product = WishlistMock.getProduct(1);
+        product.setProductId("product-batch");
+        assertIndexedPlans(() -> wishlistRepository.addProducts("user-42", List.of(WishlistMock.getProduct(1), product), 20));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when wishlists are streamed by a chunk of user IDs"
+            + " then the $in query should use the _id index")
+    @Test
+    public void forEachRawByIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.forEachRawById(List.of("user-1", "user-42", "user-199"), document -> { }), 3);
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when an _id range is streamed for the export"
+            + " then the range query should use the _id index")
+    @Test
+    public void forEachRawByIdRangeShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.forEachRawByIdRange("user-10", "user-12", document -> { }), 1);
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a product is removed atomically"
+            + " then the update should use the _id index")
+    @Test
+    public void removeProductShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.removeProduct("user-42", "product-1"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a product quantity is set atomically"
+            + " then the update should use an index")
+    @Test
+    public void updateProductQuantityShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.updateProductQuantity("user-42", "product-1", 2, null, 20));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a wishlist is cleared atomically"
+            + " then the update should use the _id index")
+    @Test
+    public void clearProductsShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.clearProducts("user-43"));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a wishlist is saved with a version"
+            + " then the versioned update should use the _id index")
+    @Test
+    public void saveShouldUseIndex() {
+        var wishlist = wishlistRepository.findById("user-42").orElseThrow();
+        capturedCommands.clear();
+
+        assertIndexedPlans(() -> wishlistRepository.save(wishlist));
+    }
+
+    @DisplayName("Given a seeded collection"
+            + " when a wishlist is deleted by id"
+            + " then the delete should use the _id index")
+    @Test
+    public void deleteByIdShouldUseIndex() {
+        assertIndexedPlans(() -> wishlistRepository.deleteById("user-42"));
+    }
+
+    private void assertIndexedPlans(Runnable repositoryCall) {
+        assertIndexedPlans(repositoryCall, 0);
+    }
+
+    /**
+     * Index scans over ranges look at one key past each range to find its end, so they may examine up to
+     * {@code extraKeysExamined} keys more than the documents they return.
+     */
+    private void assertIndexedPlans(Runnable repositoryCall, int extraKeysExamined) {
+        repositoryCall.run();
+
+        var commands = capturedCommands.stream()
+                .filter(command -> SlowCommandListener.isExplainable(command.getFirstKey()))
+                .toList();
+        assertFalse(commands.isEmpty(), "No explainable command was issued");
+
+        for (var command : commands) {
+            var explain = mongoTemplate.executeCommand(SlowCommandListener.explainCommandOf(command));
+            var stages = new ArrayList<String>();
+            collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages);
+            var executionStats = explain.get("executionStats", Document.class);
+            int returned = Math.max(1, executionStats.getInteger("nReturned"));
+
+            assertFalse(stages.contains("COLLSCAN"), () -> "Collection scan in " + command.toJson() + ": " + stages);
+            assertTrue(stages.stream().anyMatch(stage -> stage.equals("IDHACK") || stage.contains("IXSCAN")),
+                    () -> "No index used by " + command.toJson() + ": " + stages);
+            assertTrue(executionStats.getInteger("totalKeysExamined") <= returned + extraKeysExamined,
+                    () -> "Too many keys examined by " + command.toJson() + ": " + executionStats.toJson());
+            assertTrue(executionStats.getInteger("totalDocsExamined") <= returned,
+                    () -> "Too many documents examined by " + command.toJson() + ": " + executionStats.toJson());
+        }
+    }
+
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document document) {
+            if (document.containsKey("stage")) {
+                stages.add(document.getString("stage"));
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (plan instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private Wishlist seededWishlist(int index) {
+        var products = IntStream.range(0, 5)
+                .mapToObj(product -> new Product("product-" + product, "Product " + product, 1, LocalDateTime.now(), LocalDateTime.now()))
+                .toList();
+        return new Wishlist("user-" + index, LocalDateTime.now(), LocalDateTime.now(), new ArrayList<>(products), products.size(), null, null, 0L);
+    }
+
+    @TestConfiguration
+    static class CommandCaptureConfig {
+
+        @Bean
+        public MongoClientSettingsBuilderCustomizer commandCaptureCustomizer() {
+            return builder -> builder.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    capturedCommands.add(event.getCommand().clone());
+                }
+            });
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package com.ecommerce.wishlist.repository;
 
 import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.RemovedProduct;
+import com.ecommerce.wishlist.model.Wishlist;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodStarter;
 import de.flapdoodle.embed.mongo.config.MongodConfig;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
+import org.bson.RawBsonDocument;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@DataMongoTest
+@DataMongoTest(properties = "wishlist.changes.max.removed.products=2")
 public class WishlistRepositoryTest {
     private static MongodExecutable mongodExecutable;
 
@@ -148,11 +155,13 @@ public class WishlistRepositoryTest {
 
     @DisplayName("Given a saved wishlist in the repository"
             + " when the wishlist is retrieved by user ID and product ID"
-            + " then the retrieved wishlist and product details should match the expected values")
+            + " then only the matching product should be projected")
     @Test
     public void ShouldBeReturnWishlistToUserAndProductWishSuccess() {
         var product = WishlistMock.getProduct(1);
-        var wishlist = WishlistMock.getWishlist(List.of(product));
+        var product2 = WishlistMock.getProduct(2);
+        product2.setProductId("12345");
+        var wishlist = WishlistMock.getWishlist(List.of(product2, product));
         wishlist.setVersion(null);
 
         wishlistRepository.save(wishlist);
@@ -161,11 +170,10 @@ public class WishlistRepositoryTest {
         var productSaved = wishlistSaved.getProducts().get(0);
 
         assertEquals(wishlistSaved.getUserId(), wishlist.getUserId());
-        assertEquals(wishlistSaved.getCreatedAt().toLocalDate(), wishlist.getCreatedAt().toLocalDate());
-        assertEquals(wishlistSaved.getCreatedAt().getHour(), wishlist.getCreatedAt().getHour());
-        assertEquals(wishlistSaved.getUpdatedAt().toLocalDate(), wishlist.getCreatedAt().toLocalDate());
-        assertEquals(wishlistSaved.getUpdatedAt().getHour(), wishlist.getUpdatedAt().getHour());
-        assertEquals(0, wishlist.getVersion());
+        assertEquals(1, wishlistSaved.getProducts().size());
+        assertNull(wishlistSaved.getCreatedAt());
+        assertNull(wishlistSaved.getUpdatedAt());
+        assertNull(wishlistSaved.getVersion());
         assertEquals(productSaved.getProductId(), product.getProductId());
         assertEquals(productSaved.getProductName(), product.getProductName());
         assertEquals(productSaved.getQuantity(), product.getQuantity());
@@ -174,4 +182,350 @@ public class WishlistRepositoryTest {
         assertEquals(productSaved.getCreatedAt().toLocalDate(), product.getCreatedAt().toLocalDate());
         assertEquals(productSaved.getCreatedAt().getHour(), product.getCreatedAt().getHour());
     }
+
+    @DisplayName("Given a saved wishlist containing the product"
+            + " when the product is added again"
+            + " then the product quantity should be incremented in place")
+    @Test
+    public void shouldIncrementExistingProductOnAdd() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.addProduct("123", WishlistMock.getProduct(2), 20).get();
+
+        assertEquals(1, wishlistUpdated.getProducts().size());
+        assertEquals(3, wishlistUpdated.getProducts().get(0).getQuantity());
+        assertEquals(3, wishlistUpdated.getTotalQuantity());
+        assertEquals(1, wishlistUpdated.getVersion());
+    }
+
+    @DisplayName("Given a saved wishlist without the total quantity field"
+            + " when a product is added"
+            + " then the total quantity should be computed from the stored products")
+    @Test
+    public void shouldComputeTotalQuantityForLegacyWishlistOnAdd() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(5)));
+        wishlist.setTotalQuantity(null);
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.addProduct("123", WishlistMock.getProduct(2), 20).get();
+
+        assertEquals(7, wishlistUpdated.getTotalQuantity());
+    }
+
+    @DisplayName("Given a saved wishlist without the product"
+            + " when the product is added"
+            + " then the product should be appended to the wishlist")
+    @Test
+    public void shouldAppendNewProductOnAdd() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var product = WishlistMock.getProduct(1);
+        product.setProductId("12345");
+
+        var wishlistUpdated = wishlistRepository.addProduct("123", product, 20).get();
+
+        assertEquals(2, wishlistUpdated.getProducts().size());
+        assertEquals("12345", wishlistUpdated.getProducts().get(1).getProductId());
+        assertEquals(1, wishlistUpdated.getProducts().get(1).getQuantity());
+    }
+
+    @DisplayName("Given a saved wishlist with a product"
+            + " when a batch with the existing and a new product is added"
+            + " then both should be applied in a single update")
+    @Test
+    public void shouldAddProductsInSingleUpdate() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var product = WishlistMock.getProduct(3);
+        product.setProductId("12345");
+
+        var wishlistUpdated = wishlistRepository.addProducts("123", List.of(WishlistMock.getProduct(2), product), 20).get();
+
+        assertEquals(2, wishlistUpdated.getProducts().size());
+        assertEquals(3, wishlistUpdated.getProducts().get(0).getQuantity());
+        assertEquals("12345", wishlistUpdated.getProducts().get(1).getProductId());
+        assertEquals(3, wishlistUpdated.getProducts().get(1).getQuantity());
+        assertEquals(6, wishlistUpdated.getTotalQuantity());
+        assertEquals(1, wishlistUpdated.getVersion());
+    }
+
+    @DisplayName("Given a saved wishlist close to the item limit"
+            + " when a batch exceeding the limit is added"
+            + " then nothing should be updated")
+    @Test
+    public void shouldNotAddProductsExceedingLimit() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(18)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var product = WishlistMock.getProduct(1);
+        product.setProductId("12345");
+
+        var wishlistUpdated = wishlistRepository.addProducts("123", List.of(WishlistMock.getProduct(2), product), 20);
+
+        assertTrue(wishlistUpdated.isEmpty());
+        assertEquals(1, wishlistRepository.findById("123").get().getProducts().size());
+    }
+
+    @DisplayName("Given a saved wishlist close to the item limit"
+            + " when a product exceeding the limit is added"
+            + " then nothing should be updated")
+    @Test
+    public void shouldNotAddProductExceedingLimit() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(19)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.addProduct("123", WishlistMock.getProduct(2), 20);
+
+        assertTrue(wishlistUpdated.isEmpty());
+        assertEquals(19, wishlistRepository.findById("123").get().getProducts().get(0).getQuantity());
+    }
+
+    @DisplayName("Given no saved wishlist"
+            + " when a product is added"
+            + " then nothing should be returned")
+    @Test
+    public void shouldNotAddProductToNonExistentWishlist() {
+        var wishlistUpdated = wishlistRepository.addProduct("123", WishlistMock.getProduct(1), 20);
+
+        assertTrue(wishlistUpdated.isEmpty());
+    }
+
+    @DisplayName("Given a saved wishlist with a product quantity above one"
+            + " when the product is removed"
+            + " then the product quantity should be decremented")
+    @Test
+    public void shouldDecrementProductOnRemove() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.removeProduct("123", "1234").get();
+
+        assertEquals(1, wishlistUpdated.getProducts().size());
+        assertEquals(1, wishlistUpdated.getProducts().get(0).getQuantity());
+        assertEquals(1, wishlistUpdated.getTotalQuantity());
+        assertEquals(1, wishlistUpdated.getVersion());
+        assertNull(wishlistUpdated.getRemovedProducts());
+    }
+
+    @DisplayName("Given a saved wishlist with a product quantity of one"
+            + " when the product is removed"
+            + " then the product should be pulled from the wishlist")
+    @Test
+    public void shouldPullProductOnRemove() {
+        var product2 = WishlistMock.getProduct(1);
+        product2.setProductId("12345");
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1), product2));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.removeProduct("123", "1234").get();
+
+        assertEquals(1, wishlistUpdated.getProducts().size());
+        assertEquals("12345", wishlistUpdated.getProducts().get(0).getProductId());
+        assertEquals(1, wishlistUpdated.getTotalQuantity());
+        assertEquals(1, wishlistUpdated.getRemovedProducts().size());
+        assertEquals("1234", wishlistUpdated.getRemovedProducts().get(0).getProductId());
+        assertEquals(wishlistUpdated.getUpdatedAt(), wishlistUpdated.getRemovedProducts().get(0).getRemovedAt());
+    }
+
+    @DisplayName("Given more removed products than the tombstone limit"
+            + " when products are removed"
+            + " then only the newest tombstones should be kept and the trimmed time recorded")
+    @Test
+    public void shouldTrimRemovedProducts() {
+        var products = new ArrayList<Product>();
+        for (int i = 0; i < 3; i++) {
+            var product = WishlistMock.getProduct(1);
+            product.setProductId("p" + i);
+            products.add(product);
+        }
+        var wishlist = WishlistMock.getWishlist(products);
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var first = wishlistRepository.removeProduct("123", "p0").get();
+        wishlistRepository.removeProduct("123", "p1");
+        var wishlistUpdated = wishlistRepository.removeProduct("123", "p2").get();
+
+        assertEquals(List.of("p1", "p2"), wishlistUpdated.getRemovedProducts().stream().map(RemovedProduct::getProductId).toList());
+        assertEquals(first.getRemovedProducts().get(0).getRemovedAt(), wishlistUpdated.getRemovedProductsTrimmedAt());
+        assertTrue(wishlistUpdated.getProducts().isEmpty());
+    }
+
+    @DisplayName("Given a saved wishlist without the product"
+            + " when the product is removed"
+            + " then nothing should be returned")
+    @Test
+    public void shouldNotRemoveNonExistentProduct() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        assertTrue(wishlistRepository.removeProduct("123", "234").isEmpty());
+        assertEquals(0, wishlistRepository.findById("123").get().getVersion());
+    }
+
+    @DisplayName("Given saved wishlists"
+            + " when they are streamed by user IDs including a missing one"
+            + " then only the saved wishlists should be read, without tombstones")
+    @Test
+    public void shouldStreamRawWishlistsByIds() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+        var wishlist2 = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        wishlist2.setUserId("456");
+        wishlist2.setVersion(null);
+
+        wishlistRepository.saveAll(List.of(wishlist, wishlist2));
+
+        var documents = new ArrayList<RawBsonDocument>();
+        wishlistRepository.forEachRawById(List.of("123", "456", "789"), documents::add);
+
+        assertEquals(2, documents.size());
+        assertTrue(documents.stream().allMatch(document -> document.containsKey("products")
+                && !document.containsKey("version") && !document.containsKey("removedProducts")));
+    }
+
+    @DisplayName("Given a saved wishlist"
+            + " when it is inserted again in an unordered bulk with a new one"
+            + " then the new one should be inserted and the duplicate reported by index")
+    @Test
+    public void shouldInsertUnorderedAndReportDuplicates() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var duplicate = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        duplicate.setVersion(0L);
+        var wishlist2 = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        wishlist2.setUserId("456");
+        wishlist2.setVersion(0L);
+
+        var errors = wishlistRepository.insertUnordered(List.of(duplicate, wishlist2));
+
+        assertEquals(1, errors.size());
+        assertEquals(0, errors.get(0).getIndex());
+        assertEquals(11000, errors.get(0).getCode());
+        assertEquals(0, wishlistRepository.findById("456").get().getVersion());
+        assertEquals(1, wishlistRepository.findById("123").get().getProducts().get(0).getQuantity());
+    }
+
+    @DisplayName("Given saved wishlists"
+            + " when they are streamed by an _id range"
+            + " then only the wishlists after the lower and up to the upper bound should be read in _id order")
+    @Test
+    public void shouldStreamRawWishlistsByIdRange() {
+        var wishlists = new ArrayList<Wishlist>();
+        for (var userId : List.of("a", "b", "c", "d")) {
+            var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+            wishlist.setUserId(userId);
+            wishlist.setVersion(null);
+            wishlists.add(wishlist);
+        }
+        wishlistRepository.saveAll(wishlists);
+
+        var userIds = new ArrayList<String>();
+        wishlistRepository.forEachRawByIdRange("a", "c", document -> userIds.add(document.getString("_id").getValue()));
+        var allUserIds = new ArrayList<String>();
+        wishlistRepository.forEachRawByIdRange(null, null, document -> allUserIds.add(document.getString("_id").getValue()));
+
+        assertEquals(List.of("b", "c"), userIds);
+        assertEquals(List.of("a", "b", "c", "d"), allUserIds);
+        assertEquals(List.of("a", "b", "c", "d"), wishlistRepository.findSampleIds(10));
+    }
+
+    @DisplayName("Given a saved wishlist with a product"
+            + " when its quantity is set and then changed by a delta"
+            + " then the quantity and the total quantity should follow")
+    @Test
+    public void shouldSetAndChangeProductQuantity() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(15)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.updateProductQuantity("123", "1234", 4, null, 20).get();
+        assertEquals(4, wishlistUpdated.getProducts().get(0).getQuantity());
+        assertEquals(4, wishlistUpdated.getTotalQuantity());
+
+        wishlistUpdated = wishlistRepository.updateProductQuantity("123", "1234", null, 3, 20).get();
+        assertEquals(7, wishlistUpdated.getProducts().get(0).getQuantity());
+        assertEquals(7, wishlistUpdated.getTotalQuantity());
+        assertEquals(2, wishlistUpdated.getVersion());
+    }
+
+    @DisplayName("Given a saved wishlist with a product"
+            + " when its quantity is lowered below zero"
+            + " then the product should be removed and recorded as removed")
+    @Test
+    public void shouldRemoveProductWhenQuantityReachesZero() {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(15)));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.updateProductQuantity("123", "1234", null, -20, 20).get();
+
+        assertTrue(wishlistUpdated.getProducts().isEmpty());
+        assertEquals(0, wishlistUpdated.getTotalQuantity());
+        assertEquals("1234", wishlistUpdated.getRemovedProducts().get(0).getProductId());
+    }
+
+    @DisplayName("Given a saved wishlist close to the item limit"
+            + " when a product quantity is raised above the limit"
+            + " then nothing should be updated, while lowering it still should")
+    @Test
+    public void shouldNotRaiseProductQuantityAboveLimit() {
+        var product = WishlistMock.getProduct(1);
+        product.setProductId("12345");
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(18), product));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        assertTrue(wishlistRepository.updateProductQuantity("123", "12345", 3, null, 20).isEmpty());
+        assertTrue(wishlistRepository.updateProductQuantity("123", "1234", null, 2, 20).isEmpty());
+        assertEquals(17, wishlistRepository.updateProductQuantity("123", "1234", null, -2, 10).get().getTotalQuantity());
+    }
+
+    @DisplayName("Given a saved wishlist with products"
+            + " when it is cleared"
+            + " then every product should be removed and recorded as removed")
+    @Test
+    public void shouldClearProducts() {
+        var product = WishlistMock.getProduct(1);
+        product.setProductId("12345");
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(3), product));
+        wishlist.setVersion(null);
+
+        wishlistRepository.save(wishlist);
+
+        var wishlistUpdated = wishlistRepository.clearProducts("123").get();
+
+        assertTrue(wishlistUpdated.getProducts().isEmpty());
+        assertEquals(0, wishlistUpdated.getTotalQuantity());
+        assertEquals(List.of("1234", "12345"), wishlistUpdated.getRemovedProducts().stream().map(RemovedProduct::getProductId).toList());
+        assertTrue(wishlistRepository.clearProducts("456").isEmpty());
+    }
 }
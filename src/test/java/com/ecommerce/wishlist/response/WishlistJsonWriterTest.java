@@ -0,0 +1,77 @@
+package com.ecommerce.wishlist.response;
+
+import com.ecommerce.wishlist.converter.WishlistConverters;
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.Wishlist;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WishlistJsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final WishlistJsonWriter writer = new WishlistJsonWriter(mapper);
+
+    @DisplayName("Given a stored wishlist document"
+            + " when it is written as raw JSON"
+            + " then the output should match the serialized WishlistResponse")
+    @Test
+    public void shouldWriteRawDocumentLikeWishlistResponse() throws Exception {
+        var wishlist = wishlist();
+        var document = new RawBsonDocument(WishlistConverters.WishlistWritingConverter.INSTANCE.convert(wishlist), new DocumentCodec());
+        var outputStream = new ByteArrayOutputStream();
+
+        writer.write(document, outputStream);
+
+        assertEquals(mapper.writeValueAsString(WishlistResponse.fromWishlist(wishlist)), outputStream.toString());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when it is written as JSON"
+            + " then the output should match the serialized WishlistResponse")
+    @Test
+    public void shouldWriteWishlistLikeWishlistResponse() throws Exception {
+        var wishlist = wishlist();
+        var outputStream = new ByteArrayOutputStream();
+
+        writer.write(wishlist, outputStream);
+
+        assertEquals(mapper.writeValueAsString(WishlistResponse.fromWishlist(wishlist)), outputStream.toString());
+    }
+
+    @DisplayName("Given a missing wishlist"
+            + " when it is written as not found"
+            + " then the output should be a NOT_FOUND error with the user id")
+    @Test
+    public void shouldWriteNotFoundWithUserId() throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+
+        writer.writeNotFound("123", outputStream);
+
+        assertEquals("{\"userId\":\"123\",\"type\":\"NOT_FOUND\",\"message\":\"Wishlist not found to user: 123\"}",
+                outputStream.toString());
+    }
+
+    private static Wishlist wishlist() {
+        // Stored dates have millisecond precision.
+        var now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        var products = List.of(
+                new Product("1234", "teste", 2, now.minusDays(1), now),
+                new Product("5678", "outro \"produto\"", 1, now.withNano(0), now.withNano(100_000_000)));
+        return new Wishlist("123", now.minusDays(2), now, products, 3, null, null, 4L);
+    }
+}
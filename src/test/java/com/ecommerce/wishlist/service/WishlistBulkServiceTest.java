@@ -0,0 +1,201 @@
+package com.ecommerce.wishlist.service;
+
+import com.ecommerce.wishlist.converter.WishlistConverters;
+import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
+import com.ecommerce.wishlist.service.impl.WishlistBulkServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WishlistBulkServiceTest {
+
+    @Mock
+    private WishlistRepository wishlistRepository;
+
+    private WishlistBulkServiceImpl wishlistBulkService;
+
+    private final AtomicInteger runningChunks = new AtomicInteger();
+
+    private final AtomicInteger maxRunningChunks = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        wishlistBulkService = new WishlistBulkServiceImpl(wishlistRepository, new WishlistJsonWriter(new ObjectMapper()), 2, 2, 1, 2);
+
+        doAnswer(invocation -> {
+            List<String> userIds = invocation.getArgument(0);
+            Consumer<RawBsonDocument> action = invocation.getArgument(1);
+            maxRunningChunks.accumulateAndGet(runningChunks.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+                if (userIds.stream().anyMatch(userId -> userId.startsWith("failing"))) {
+                    throw new IllegalStateException("Mongo is down");
+                }
+            } finally {
+                runningChunks.decrementAndGet();
+            }
+            userIds.stream().filter(userId -> !userId.startsWith("missing")).forEach(userId -> action.accept(document(userId)));
+            return null;
+        }).when(wishlistRepository).forEachRawById(any(), any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wishlistBulkService.shutdown();
+    }
+
+    @DisplayName("Given existing and missing user IDs"
+            + " when writing their wishlists"
+            + " then one line should be written per user with missing users reported inline")
+    @Test
+    public void ShoudBeWriteOneLinePerUserWithMissingUsersInline() throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+
+        wishlistBulkService.writeByUserIds(List.of("1", "missing-2", "3", "4", "missing-5"), outputStream);
+
+        var lines = outputStream.toString().lines().toList();
+        assertEquals(5, lines.size());
+        var mapper = new ObjectMapper();
+        for (var line : lines) {
+            var node = mapper.readTree(line);
+            if (node.get("userId").asText().startsWith("missing")) {
+                assertEquals("NOT_FOUND", node.get("type").asText());
+            } else {
+                assertTrue(node.get("products").isArray());
+            }
+        }
+        verify(wishlistRepository, times(3)).forEachRawById(any(), any());
+    }
+
+    @DisplayName("Given repeated user IDs"
+            + " when writing their wishlists"
+            + " then each user should be fetched and written once")
+    @Test
+    public void ShoudBeWriteRepeatedUsersOnce() throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+
+        wishlistBulkService.writeByUserIds(List.of("1", "1", "missing-2", "missing-2"), outputStream);
+
+        assertEquals(2, outputStream.toString().lines().count());
+        verify(wishlistRepository, times(1)).forEachRawById(eq(List.of("1", "missing-2")), any());
+    }
+
+    @DisplayName("Given many user IDs"
+            + " when writing their wishlists in parallel"
+            + " then every line should be complete")
+    @Test
+    public void ShoudBeNotInterleaveLinesOfParallelChunks() throws Exception {
+        var userIds = IntStream.range(0, 1000).mapToObj(String::valueOf).toList();
+        var outputStream = new ByteArrayOutputStream();
+
+        wishlistBulkService.writeByUserIds(userIds, outputStream);
+
+        var writtenUserIds = new ArrayList<String>();
+        var mapper = new ObjectMapper();
+        for (var line : outputStream.toString().lines().toList()) {
+            writtenUserIds.add(mapper.readTree(line).get("userId").asText());
+        }
+        assertEquals(userIds.size(), writtenUserIds.size());
+        assertTrue(writtenUserIds.containsAll(userIds));
+    }
+
+    @DisplayName("Given a client that goes away"
+            + " when writing the wishlists"
+            + " then the IOException should be propagated")
+    @Test
+    public void ShoudBeReturnErrorWhenOutputFails() {
+        var outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrowsExactly(IOException.class, () -> wishlistBulkService.writeByUserIds(List.of("1", "2", "3"), outputStream));
+    }
+
+    @DisplayName("Given a chunk that fails after other lines were written"
+            + " when writing the wishlists"
+            + " then the response should end with an INCOMPLETE_RESPONSE line")
+    @Test
+    public void ShoudBeEndWithErrorLineWhenChunkFailsAfterWriting() throws Exception {
+        var sequentialService = new WishlistBulkServiceImpl(wishlistRepository, new WishlistJsonWriter(new ObjectMapper()), 2, 1, 1, 1);
+        var outputStream = new ByteArrayOutputStream();
+
+        try {
+            sequentialService.writeByUserIds(List.of("1", "2", "failing-3"), outputStream);
+        } finally {
+            sequentialService.shutdown();
+        }
+
+        var lines = outputStream.toString().lines().toList();
+        assertEquals(3, lines.size());
+        assertEquals("INCOMPLETE_RESPONSE", new ObjectMapper().readTree(lines.get(2)).get("type").asText());
+    }
+
+    @DisplayName("Given a chunk that fails before anything was written"
+            + " when writing the wishlists"
+            + " then the exception should be propagated")
+    @Test
+    public void ShoudBeReturnErrorWhenChunkFailsBeforeWriting() {
+        var outputStream = new ByteArrayOutputStream();
+
+        assertThrowsExactly(IllegalStateException.class, () -> wishlistBulkService.writeByUserIds(List.of("failing-1"), outputStream));
+        assertEquals(0, outputStream.size());
+    }
+
+    @DisplayName("Given more chunks than a request may run at once"
+            + " when writing the wishlists"
+            + " then no more than the per-request limit should be fetched in parallel")
+    @Test
+    public void ShoudBeLimitChunksPerRequest() throws Exception {
+        var limitedService = new WishlistBulkServiceImpl(wishlistRepository, new WishlistJsonWriter(new ObjectMapper()), 2, 4, 16, 1);
+        var userIds = IntStream.range(0, 40).mapToObj(String::valueOf).toList();
+        var outputStream = new ByteArrayOutputStream();
+
+        try {
+            limitedService.writeByUserIds(userIds, outputStream);
+        } finally {
+            limitedService.shutdown();
+        }
+
+        assertEquals(userIds.size(), outputStream.toString().lines().count());
+        assertEquals(1, maxRunningChunks.get());
+    }
+
+    private static RawBsonDocument document(String userId) {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setUserId(userId);
+        return new RawBsonDocument(WishlistConverters.WishlistWritingConverter.INSTANCE.convert(wishlist), new DocumentCodec());
+    }
+}
@@ -0,0 +1,219 @@
+package com.ecommerce.wishlist.service;
+
+import com.ecommerce.wishlist.converter.WishlistConverters;
+import com.ecommerce.wishlist.exception.ExportInProgressException;
+import com.ecommerce.wishlist.exception.NotFoundException;
+import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.response.WishlistExportResponse;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
+import com.ecommerce.wishlist.service.impl.WishlistExportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WishlistExportServiceTest {
+
+    private static final TreeSet<String> USER_IDS = IntStream.range(0, 100)
+            .mapToObj(i -> String.format("user-%03d", i))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    @Mock
+    private WishlistRepository wishlistRepository;
+
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicBoolean failOnUser050 = new AtomicBoolean();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicBoolean blockOnUser050 = new AtomicBoolean();
+
+    private WishlistExportServiceImpl wishlistExportService;
+
+    @BeforeEach
+    public void setUp() {
+        wishlistExportService = new WishlistExportServiceImpl(wishlistRepository, new WishlistJsonWriter(mapper), mapper,
+                directory.toString(), 4, 7);
+
+        lenient().when(wishlistRepository.findSampleIds(anyInt())).thenReturn(List.copyOf(USER_IDS));
+        lenient().doAnswer(invocation -> {
+            String afterId = invocation.getArgument(0);
+            String toId = invocation.getArgument(1);
+            Consumer<RawBsonDocument> action = invocation.getArgument(2);
+            var userIds = afterId == null ? USER_IDS : USER_IDS.tailSet(afterId, false);
+            for (var userId : toId == null ? userIds : userIds.headSet(toId, true)) {
+                if (userId.equals("user-050") && failOnUser050.get()) {
+                    throw new DataAccessResourceFailureException("Connection reset");
+                }
+                if (userId.equals("user-050") && blockOnUser050.get()) {
+                    release.await();
+                }
+                action.accept(document(userId));
+            }
+            return null;
+        }).when(wishlistRepository).forEachRawByIdRange(any(), any(), any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        wishlistExportService.shutdown();
+    }
+
+    @DisplayName("Given a collection of wishlists"
+            + " when it is exported"
+            + " then every wishlist should be written once across the partition files")
+    @Test
+    public void ShoudBeExportEveryWishlistOnce() throws Exception {
+        var response = exportAndAwait();
+
+        assertEquals(WishlistExportResponse.State.COMPLETED, response.getState());
+        assertEquals(List.of("wishlist-export-0.ndjson.gz", "wishlist-export-1.ndjson.gz", "wishlist-export-2.ndjson.gz",
+                "wishlist-export-3.ndjson.gz"), response.getFiles());
+        assertEquals(100, response.getExported());
+        assertFalse(response.isResumed());
+        assertEquals(new ArrayList<>(USER_IDS), exportedUserIds(response.getFiles()));
+        verify(wishlistRepository, times(4)).forEachRawByIdRange(any(), any(), any());
+    }
+
+    @DisplayName("Given an export that failed halfway with a partly written file"
+            + " when it is exported again"
+            + " then it should resume from the checkpoints without losing or repeating wishlists")
+    @Test
+    public void ShoudBeResumeFromCheckpoint() throws Exception {
+        failOnUser050.set(true);
+        assertEquals(WishlistExportResponse.State.FAILED, exportAndAwait().getState());
+
+        // A crash can leave an unfinished gzip member after the last checkpoint.
+        Files.write(directory.resolve("wishlist-export-1.ndjson.gz"), new byte[]{31, -117, 8, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+        failOnUser050.set(false);
+
+        var response = exportAndAwait();
+
+        assertTrue(response.isResumed());
+        assertEquals(100, response.getExported());
+        assertEquals(new ArrayList<>(USER_IDS), exportedUserIds(response.getFiles()));
+        verify(wishlistRepository, times(1)).forEachRawByIdRange(eq("user-046"), eq("user-050"), any());
+    }
+
+    @DisplayName("Given a finished export"
+            + " when it is exported again"
+            + " then a new export should be written from the start")
+    @Test
+    public void ShoudBeStartNewExportAfterFinishedOne() throws Exception {
+        exportAndAwait();
+
+        var response = exportAndAwait();
+
+        assertFalse(response.isResumed());
+        assertEquals(100, response.getExported());
+        assertEquals(new ArrayList<>(USER_IDS), exportedUserIds(response.getFiles()));
+    }
+
+    @DisplayName("Given a collection of wishlists"
+            + " when an export is started"
+            + " then it should run in the background and report its progress until it completes")
+    @Test
+    public void ShoudBeExportInBackground() throws Exception {
+        blockOnUser050.set(true);
+
+        var started = wishlistExportService.start();
+
+        assertEquals(WishlistExportResponse.State.RUNNING, started.getState());
+        assertEquals(WishlistExportResponse.State.RUNNING, wishlistExportService.getStatus().getState());
+        release.countDown();
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                wishlistExportService.getStatus().getState() == WishlistExportResponse.State.COMPLETED);
+        var response = wishlistExportService.getStatus();
+        assertEquals(100, response.getExported());
+        assertEquals(new ArrayList<>(USER_IDS), exportedUserIds(response.getFiles()));
+    }
+
+    @DisplayName("Given a running export"
+            + " when another export is started"
+            + " then it should be rejected without waiting for the running one")
+    @Test
+    public void ShoudBeRejectExportWhileOneIsRunning() throws Exception {
+        blockOnUser050.set(true);
+        wishlistExportService.start();
+
+        assertThrowsExactly(ExportInProgressException.class, () -> wishlistExportService.start());
+
+        release.countDown();
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                wishlistExportService.getStatus().getState() == WishlistExportResponse.State.COMPLETED);
+    }
+
+    @DisplayName("Given no export was started"
+            + " when the export status is requested"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenNoExportWasStarted() {
+        assertThrowsExactly(NotFoundException.class, () -> wishlistExportService.getStatus());
+    }
+
+    private WishlistExportResponse exportAndAwait() throws Exception {
+        wishlistExportService.start();
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                wishlistExportService.getStatus().getState() != WishlistExportResponse.State.RUNNING);
+        return wishlistExportService.getStatus();
+    }
+
+    private List<String> exportedUserIds(List<String> files) throws Exception {
+        var userIds = new ArrayList<String>();
+        for (var file : files) {
+            try (var reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(directory.resolve(file))), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    userIds.add(mapper.readTree(line).get("userId").asText());
+                }
+            }
+        }
+        return userIds;
+    }
+
+    private static RawBsonDocument document(String userId) {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setUserId(userId);
+        return new RawBsonDocument(WishlistConverters.WishlistWritingConverter.INSTANCE.convert(wishlist), new DocumentCodec());
+    }
+}
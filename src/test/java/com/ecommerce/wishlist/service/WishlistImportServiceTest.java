@@ -0,0 +1,179 @@
+package com.ecommerce.wishlist.service;
+
+import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.service.impl.WishlistImportServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.validation.Validation;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WishlistImportServiceTest {
+
+    @Mock
+    private WishlistRepository wishlistRepository;
+
+    @TempDir
+    private Path rejectDirectory;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private WishlistImportServiceImpl wishlistImportService;
+
+    @BeforeEach
+    public void setUp() {
+        wishlistImportService = new WishlistImportServiceImpl(wishlistRepository, mapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), 20, 2, 2, 200, rejectDirectory.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wishlistImportService.shutdown();
+    }
+
+    @DisplayName("Given NDJSON with valid, invalid and malformed lines"
+            + " when the wishlists are imported"
+            + " then the valid ones should be inserted and the others written to the reject file")
+    @Test
+    public void ShoudBeImportValidLinesAndRejectOthers() throws Exception {
+        var ndjson = String.join("\n",
+                line("1", 2),
+                "{\"userId\": \"\", \"products\": []}",
+                "",
+                "{not json",
+                line("4", 21),
+                line("5", 1));
+
+        var response = wishlistImportService.importWishlists(input(ndjson));
+
+        assertEquals(2, response.getImported());
+        assertEquals(3, response.getRejected());
+        var rejects = Files.readAllLines(rejectDirectory.resolve(response.getRejectFile())).stream()
+                .map(this::readTree)
+                .collect(Collectors.toMap(reject -> reject.get("line").asLong(), reject -> reject.get("type").asText()));
+        assertEquals(3, rejects.size());
+        assertEquals("VALIDATION_ERROR", rejects.get(2L));
+        assertEquals("VALIDATION_ERROR", rejects.get(4L));
+        assertEquals("MAX_ITEMS", rejects.get(5L));
+        verify(wishlistRepository, times(1)).insertUnordered(argThat(wishlists -> wishlists.size() == 2
+                && wishlists.get(0).getUserId().equals("1") && wishlists.get(0).getVersion() == 0L
+                && wishlists.get(0).getCreatedAt() != null && wishlists.get(1).getUserId().equals("5")));
+    }
+
+    @DisplayName("Given a line longer than the maximum length among CRLF-ended lines"
+            + " when the wishlists are imported"
+            + " then it should be rejected and the others imported")
+    @Test
+    public void ShoudBeRejectTooLongLines() throws Exception {
+        var ndjson = line("1", 1) + "\r\n" + "{\"userId\": \"" + "2".repeat(10_000) + "\"}\r\n" + line("3", 1) + "\r\n";
+
+        var response = wishlistImportService.importWishlists(input(ndjson));
+
+        assertEquals(2, response.getImported());
+        assertEquals(1, response.getRejected());
+        assertEquals(rejectDirectory.resolve(response.getRejectFile()).getFileName().toString(), response.getRejectFile());
+        var reject = readTree(Files.readAllLines(rejectDirectory.resolve(response.getRejectFile())).get(0));
+        assertEquals(2, reject.get("line").asLong());
+        assertEquals("VALIDATION_ERROR", reject.get("type").asText());
+    }
+
+    @DisplayName("Given more wishlists than a batch holds"
+            + " when the wishlists are imported"
+            + " then they should be inserted in batches without a reject file")
+    @Test
+    public void ShoudBeImportInBatches() throws Exception {
+        var ndjson = IntStream.range(0, 5).mapToObj(i -> line(String.valueOf(i), 1)).collect(Collectors.joining("\n"));
+
+        var response = wishlistImportService.importWishlists(input(ndjson));
+
+        assertEquals(5, response.getImported());
+        assertEquals(0, response.getRejected());
+        assertNull(response.getRejectFile());
+        verify(wishlistRepository, times(3)).insertUnordered(any());
+        try (var files = Files.list(rejectDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @DisplayName("Given a wishlist that already exists"
+            + " when the wishlists are imported"
+            + " then its line should be rejected as already existing")
+    @Test
+    public void ShoudBeRejectExistingWishlists() throws Exception {
+        when(wishlistRepository.insertUnordered(any()))
+                .thenReturn(List.of(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1)));
+
+        var response = wishlistImportService.importWishlists(input(line("1", 1) + "\n" + line("2", 1)));
+
+        assertEquals(1, response.getImported());
+        var reject = readTree(Files.readAllLines(rejectDirectory.resolve(response.getRejectFile())).get(0));
+        assertEquals(2, reject.get("line").asLong());
+        assertEquals("2", reject.get("userId").asText());
+        assertEquals("WISHLIST_ALREADY_EXISTS", reject.get("type").asText());
+    }
+
+    @DisplayName("Given two imports with rejected lines"
+            + " when they run one right after the other"
+            + " then each should write its rejects to its own file")
+    @Test
+    public void ShoudBeWriteRejectsOfEachImportToItsOwnFile() throws Exception {
+        var first = wishlistImportService.importWishlists(input("{not json"));
+        var second = wishlistImportService.importWishlists(input("{not json\n{not json"));
+
+        assertTrue(!first.getRejectFile().equals(second.getRejectFile()));
+        assertEquals(1, Files.readAllLines(rejectDirectory.resolve(first.getRejectFile())).size());
+        assertEquals(2, Files.readAllLines(rejectDirectory.resolve(second.getRejectFile())).size());
+    }
+
+    @DisplayName("Given the database fails during a batch"
+            + " when the wishlists are imported"
+            + " then the import should fail")
+    @Test
+    public void ShoudBeReturnErrorWhenBatchFails() {
+        when(wishlistRepository.insertUnordered(any())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThrowsExactly(DataAccessResourceFailureException.class,
+                () -> wishlistImportService.importWishlists(input(line("1", 1))));
+    }
+
+    private static String line(String userId, int quantity) {
+        return "{\"userId\": \"" + userId + "\", \"products\": [{\"productId\": \"1234\", \"productName\": \"teste\", \"quantity\": " + quantity + "}]}";
+    }
+
+    private static ByteArrayInputStream input(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JsonNode readTree(String line) {
+        try {
+            return mapper.readTree(line);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
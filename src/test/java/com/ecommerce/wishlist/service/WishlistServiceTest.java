@@ -1,11 +1,25 @@
 package com.ecommerce.wishlist.service;
 
+import com.ecommerce.wishlist.cache.WishlistCache;
+import com.ecommerce.wishlist.cache.WishlistJsonCache;
 import com.ecommerce.wishlist.exception.AlreadyExistsException;
+import com.ecommerce.wishlist.exception.InvalidRequestException;
 import com.ecommerce.wishlist.exception.MaxItemsException;
 import com.ecommerce.wishlist.exception.NotFoundException;
 import com.ecommerce.wishlist.mock.WishlistMock;
+import com.ecommerce.wishlist.model.Product;
+import com.ecommerce.wishlist.model.RemovedProduct;
+import com.ecommerce.wishlist.model.Wishlist;
 import com.ecommerce.wishlist.repository.WishlistRepository;
+import com.ecommerce.wishlist.resquest.ProductQuantityRequest;
+import com.ecommerce.wishlist.response.ProductResponse;
+import com.ecommerce.wishlist.response.WishlistChangesResponse;
+import com.ecommerce.wishlist.response.WishlistJsonWriter;
 import com.ecommerce.wishlist.service.impl.WishlistServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,13 +28,21 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -32,13 +54,20 @@ public class WishlistServiceTest {
 
     private WishlistServiceImpl wishlistService;
 
+    private WishlistCache wishlistCache;
+
+    private WishlistJsonCache wishlistJsonCache;
+
     @Value("${wishlist.max.items}")
     private int maxItem = 20;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        wishlistService = new WishlistServiceImpl(wishlistRepository, maxItem);
+        wishlistCache = new WishlistCache(100, 60);
+        wishlistJsonCache = new WishlistJsonCache(true, 1 << 20, 1 << 16);
+        wishlistService = new WishlistServiceImpl(wishlistRepository, wishlistCache, new WishlistJsonWriter(new ObjectMapper()), wishlistJsonCache,
+                maxItem, true, 5000);
     }
 
     @DisplayName("Given a valid wishlist request"
@@ -55,9 +84,7 @@ public class WishlistServiceTest {
         var productExpected = WishlistMock.getProductResponse(1);
         var wishlistExpected = WishlistMock.getWishlistResponse(List.of(productExpected));
 
-        when(wishlistRepository.findById(any())).thenReturn(Optional.empty());
-
-        when(wishlistRepository.save(any())).thenReturn(mockWishlist);
+        when(wishlistRepository.insert(any(Wishlist.class))).thenReturn(mockWishlist);
 
         var wishlist = wishlistService.create(wishlistDto);
         var product = wishlist.getProducts().get(0);
@@ -85,12 +112,11 @@ public class WishlistServiceTest {
 
         var wishlistDto = WishlistMock.getWishlitRequest(List.of(productDto));
 
-        var wishlist = WishlistMock.getWishlist(new ArrayList<>());
-
-        when(wishlistRepository.findById(any())).thenReturn(Optional.of(wishlist));
+        when(wishlistRepository.insert(any(Wishlist.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
 
         assertThrowsExactly(AlreadyExistsException.class, () -> wishlistService.create(wishlistDto));
 
+        verify(wishlistRepository, times(0)).findById(any());
         verify(wishlistRepository, times(0)).save(any());
     }
 
@@ -104,11 +130,9 @@ public class WishlistServiceTest {
 
         var wishlistDto = WishlistMock.getWishlitRequest(List.of(productDto, productDto2));
 
-        when(wishlistRepository.findById(any())).thenReturn(Optional.empty());
-
         assertThrowsExactly(MaxItemsException.class, () -> wishlistService.create(wishlistDto));
 
-        verify(wishlistRepository, times(0)).save(any());
+        verify(wishlistRepository, times(0)).insert(any(Wishlist.class));
     }
 
     @DisplayName("Given a valid user ID"
@@ -151,15 +175,292 @@ public class WishlistServiceTest {
         assertThrowsExactly(NotFoundException.class, () -> wishlistService.getByUserId("123"));
     }
 
+    @DisplayName("Given a wishlist that is not cached"
+            + " when writing the wishlist JSON"
+            + " then the raw document should be written without mapping it")
+    @Test
+    public void ShoudBeWriteRawWishlistJson() throws Exception {
+        var document = new RawBsonDocument(new Document("_id", "123").append("products", List.of()), new DocumentCodec());
+        var outputStream = new ByteArrayOutputStream();
+        var projected = new Wishlist();
+        projected.setUserId("123");
+
+        when(wishlistRepository.findVersionByUserId("123")).thenReturn(Optional.of(projected));
+        when(wishlistRepository.findRawById("123")).thenReturn(Optional.of(document));
+
+        wishlistService.writeByUserId("123", outputStream);
+
+        assertEquals("{\"userId\":\"123\",\"createdAt\":null,\"updatedAt\":null,\"products\":[]}", outputStream.toString());
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when writing the wishlist JSON"
+            + " then it should be written from the cache")
+    @Test
+    public void ShoudBeWriteCachedWishlistJson() throws Exception {
+        wishlistCache.put(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        var outputStream = new ByteArrayOutputStream();
+
+        wishlistService.writeByUserId("123", outputStream);
+
+        assertTrue(outputStream.toString().startsWith("{\"userId\":\"123\""));
+        verify(wishlistRepository, times(0)).findRawById(any());
+    }
+
+    @DisplayName("Given a wishlist JSON already written once"
+            + " when writing the same version again"
+            + " then the serialized bytes should be served from the JSON cache after a version-only lookup")
+    @Test
+    public void ShoudBeWriteWishlistJsonFromJsonCache() throws Exception {
+        var document = new RawBsonDocument(new Document("_id", "123").append("products", List.of()).append("version", 2L), new DocumentCodec());
+        var projected = new Wishlist();
+        projected.setUserId("123");
+        projected.setVersion(2L);
+
+        when(wishlistRepository.findVersionByUserId("123")).thenReturn(Optional.of(projected));
+        when(wishlistRepository.findRawById("123")).thenReturn(Optional.of(document));
+
+        var first = new ByteArrayOutputStream();
+        wishlistService.writeByUserId("123", first);
+        var second = new ByteArrayOutputStream();
+        wishlistService.writeByUserId("123", second);
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(1, wishlistJsonCache.getHits());
+        assertEquals(1, wishlistJsonCache.getMisses());
+        verify(wishlistRepository, times(1)).findRawById("123");
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a wishlist JSON cached at version 0"
+            + " when the wishlist is deleted and created again"
+            + " then the JSON of the new wishlist should be written instead of the cached one")
+    @Test
+    public void ShoudBeWriteRecreatedWishlistJson() throws Exception {
+        wishlistCache.put(WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1))));
+        wishlistService.writeByUserId("123", new ByteArrayOutputStream());
+
+        // The deleted wishlist has already left the near-cache.
+        wishlistCache.invalidate("123");
+        when(wishlistRepository.insert(any(Wishlist.class))).thenReturn(WishlistMock.getWishlist(List.of()));
+        wishlistService.create(WishlistMock.getWishlitRequest(List.of()));
+
+        var outputStream = new ByteArrayOutputStream();
+        wishlistService.writeByUserId("123", outputStream);
+
+        assertTrue(outputStream.toString().contains("\"products\":[]"));
+        assertEquals(0, wishlistJsonCache.getHits());
+    }
+
+    @DisplayName("Given a wishlist written as raw JSON"
+            + " when its ETag is reported with the body"
+            + " then it should match the ETag of a conditional request")
+    @Test
+    public void ShoudBeReportETagOfWrittenWishlist() throws Exception {
+        var updatedAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        var document = new RawBsonDocument(new Document("_id", "123").append("products", List.of()).append("version", 3L)
+                .append("updatedAt", Date.from(updatedAt.atZone(ZoneId.systemDefault()).toInstant())), new DocumentCodec());
+        var projected = new Wishlist();
+        projected.setUserId("123");
+        projected.setVersion(3L);
+        projected.setUpdatedAt(updatedAt);
+
+        when(wishlistRepository.findRawById("123")).thenReturn(Optional.of(document));
+        when(wishlistRepository.findVersionByUserId("123")).thenReturn(Optional.of(projected));
+
+        var eTag = new AtomicReference<String>();
+        wishlistService.writeByUserId("123", eTag::set, new ByteArrayOutputStream());
+
+        assertEquals(wishlistService.getETag("123"), eTag.get());
+    }
+
+    @DisplayName("Given a wishlist that is not cached"
+            + " when its ETag is requested"
+            + " then it should be built from a version-only projection")
+    @Test
+    public void ShoudBeReturnETagFromVersionProjection() throws Exception {
+        var projected = new Wishlist();
+        projected.setUserId("123");
+        projected.setVersion(3L);
+        projected.setUpdatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+
+        when(wishlistRepository.findVersionByUserId("123")).thenReturn(Optional.of(projected));
+
+        var eTag = wishlistService.getETag("123");
+
+        assertTrue(eTag.startsWith("\"3-") && eTag.endsWith("\""));
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when its ETag is requested"
+            + " then it should change once the wishlist version changes")
+    @Test
+    public void ShoudBeChangeETagWithVersion() throws Exception {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlistCache.put(wishlist);
+        var eTag = wishlistService.getETag("123");
+
+        var updated = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        updated.setUpdatedAt(wishlist.getUpdatedAt());
+        updated.setVersion(1L);
+        wishlistCache.put(updated);
+
+        assertNotEquals(eTag, wishlistService.getETag("123"));
+        verify(wishlistRepository, times(0)).findVersionByUserId(any());
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when its ETag is requested"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenETagOfNotFoundUser() throws Exception {
+        when(wishlistRepository.findVersionByUserId(any())).thenReturn(Optional.empty());
+
+        assertThrowsExactly(NotFoundException.class, () -> wishlistService.getETag("123"));
+    }
+
+    @DisplayName("Given a wishlist with products changed and removed at different times"
+            + " when its changes since a point in time are requested"
+            + " then only later changes and removals of products not in the wishlist should be returned")
+    @Test
+    public void ShoudBeReturnChangesSinceTimestamp() throws Exception {
+        var since = LocalDateTime.of(2024, 1, 1, 12, 0);
+        var unchanged = new Product("1", "unchanged", 1, since.minusDays(2), since.minusDays(1));
+        var updated = new Product("2", "updated", 2, since.minusDays(2), since.plusMinutes(1));
+        var readded = new Product("3", "readded", 1, since.plusMinutes(3), since.plusMinutes(3));
+        var wishlist = WishlistMock.getWishlist(List.of(unchanged, updated, readded));
+        wishlist.setRemovedProducts(List.of(
+                new RemovedProduct("4", since.minusMinutes(1)),
+                new RemovedProduct("5", since.plusMinutes(1)),
+                new RemovedProduct("3", since.plusMinutes(2))));
+
+        when(wishlistRepository.findById("123")).thenReturn(Optional.of(wishlist));
+
+        var changes = wishlistService.getChanges("123", since.toString());
+
+        assertEquals(false, changes.isSnapshot());
+        assertEquals(List.of("2", "3"), changes.getProducts().stream().map(ProductResponse::getProductId).toList());
+        assertEquals(List.of("5"), changes.getRemovedProductIds());
+    }
+
+    @DisplayName("Given a wishlist whose tombstones were trimmed after a point in time"
+            + " when its changes since that point are requested"
+            + " then a full snapshot should be returned")
+    @Test
+    public void ShoudBeReturnSnapshotWhenHistoryIsExceeded() throws Exception {
+        var since = LocalDateTime.of(2024, 1, 1, 12, 0);
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setRemovedProductsTrimmedAt(since.plusMinutes(1));
+
+        when(wishlistRepository.findById("123")).thenReturn(Optional.of(wishlist));
+
+        var changes = wishlistService.getChanges("123", since.toString());
+
+        assertEquals(true, changes.isSnapshot());
+        assertEquals(1, changes.getProducts().size());
+    }
+
+    @DisplayName("Given a wishlist"
+            + " when its changes since its current or an older version are requested"
+            + " then no changes or a full snapshot should be returned")
+    @Test
+    public void ShoudBeReturnChangesSinceVersion() throws Exception {
+        var wishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        wishlist.setVersion(3L);
+
+        when(wishlistRepository.findById("123")).thenReturn(Optional.of(wishlist));
+
+        var unchanged = wishlistService.getChanges("123", "3");
+        var snapshot = wishlistService.getChanges("123", "2");
+
+        assertEquals(false, unchanged.isSnapshot());
+        assertTrue(unchanged.getProducts().isEmpty());
+        assertEquals(true, snapshot.isSnapshot());
+        assertEquals(1, snapshot.getProducts().size());
+    }
+
+    @DisplayName("Given the next cursor of a previous response"
+            + " when the changes since it are requested"
+            + " then no changes should be returned for the same version and the later changes for an older one,"
+            + " including those stamped by a lagging clock")
+    @Test
+    public void ShoudBeReturnChangesSinceCursor() throws Exception {
+        var since = LocalDateTime.of(2024, 1, 1, 12, 0);
+        var previous = WishlistMock.getWishlist(List.of());
+        previous.setVersion(3L);
+        previous.setUpdatedAt(since);
+        var unchanged = new Product("1", "unchanged", 1, since.minusDays(2), since.minusDays(1));
+        var lagging = new Product("2", "lagging", 1, since.minusSeconds(2), since.minusSeconds(2));
+        var wishlist = WishlistMock.getWishlist(List.of(unchanged, lagging));
+        wishlist.setVersion(4L);
+        wishlist.setUpdatedAt(since.minusSeconds(2));
+
+        when(wishlistRepository.findById("123")).thenReturn(Optional.of(wishlist));
+
+        var cursor = WishlistChangesResponse.unchanged(previous).getNext();
+        var changes = wishlistService.getChanges("123", cursor);
+        var next = wishlistService.getChanges("123", changes.getNext());
+
+        assertEquals("3@2024-01-01T12:00", cursor);
+        assertEquals(false, changes.isSnapshot());
+        assertEquals(List.of("2"), changes.getProducts().stream().map(ProductResponse::getProductId).toList());
+        assertEquals(false, next.isSnapshot());
+        assertTrue(next.getProducts().isEmpty());
+        assertThrowsExactly(InvalidRequestException.class, () -> wishlistService.getChanges("123", "x@" + since));
+    }
+
+    @DisplayName("Given a cached wishlist older than the stored one"
+            + " when its changes since the cached version are requested"
+            + " then the stored wishlist should be returned as a snapshot")
+    @Test
+    public void ShoudBeReturnChangesSinceStoredVersion() throws Exception {
+        var cached = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        cached.setVersion(3L);
+        wishlistCache.put(cached);
+        var stored = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        stored.setVersion(4L);
+
+        when(wishlistRepository.findById("123")).thenReturn(Optional.of(stored));
+
+        var changes = wishlistService.getChanges("123", "3");
+
+        assertEquals(true, changes.isSnapshot());
+        assertEquals(2, changes.getProducts().get(0).getQuantity());
+    }
+
+    @DisplayName("Given an invalid since value"
+            + " when the changes are requested"
+            + " then an InvalidRequestException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenSinceIsInvalid() throws Exception {
+        assertThrowsExactly(InvalidRequestException.class, () -> wishlistService.getChanges("123", "yesterday"));
+        assertThrowsExactly(InvalidRequestException.class, () -> wishlistService.getChanges("123", "99999999999999999999"));
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when writing the wishlist JSON"
+            + " then a NotFoundException should be thrown before anything is written")
+    @Test
+    public void ShoudBeReturnErrorWhenWritingNotFoundUser() throws Exception {
+        var outputStream = new ByteArrayOutputStream();
+
+        when(wishlistRepository.findVersionByUserId(any())).thenReturn(Optional.empty());
+
+        assertThrowsExactly(NotFoundException.class, () -> wishlistService.writeByUserId("123", outputStream));
+        assertEquals(0, outputStream.size());
+    }
+
     @DisplayName("Given a valid user ID and product ID"
             + " when checking if the product is in the wishlist"
             + " then the retrieved product details should match the expected values")
     @Test
     public void ShoudBeReturnProductIfIsInWishlist() throws Exception {
-        var mockProduct = WishlistMock.getProduct(1);
-        var mockProduct2 = WishlistMock.getProduct(2);
-        mockProduct2.setProductId("234");
-        var mockWishlist = WishlistMock.getWishlist(List.of(mockProduct, mockProduct2));
+        var mockProduct = WishlistMock.getProduct(2);
+        mockProduct.setProductId("234");
+        var mockWishlist = new Wishlist("123", null, null, List.of(mockProduct), null, null, null, null);
 
         var productExpected = WishlistMock.getProductResponse(2);
         productExpected.setProductId("234");
@@ -189,38 +490,18 @@ public class WishlistServiceTest {
 
     @DisplayName("Given a valid user ID and existing product ID"
             + " when removing the product from the wishlist"
-            + " then the product should be successfully removed")
+            + " then the product should be removed with a single repository update")
     @Test
     public void ShoudBeReturnSuccessWhenRemoveProductOfWishlist() throws Exception {
-        var product = WishlistMock.getProduct(1);
-        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product)));
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>());
 
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
+        when(wishlistRepository.removeProduct(anyString(), anyString())).thenReturn(Optional.of(mockWishlist));
 
         wishlistService.removeProduct("123", "1234");
 
-        mockWishlist.setProducts(new ArrayList<>());
-
-        verify(wishlistRepository, times(1)).save(mockWishlist);
-    }
-
-    @DisplayName("Given a valid user ID and existing product ID"
-            + " when decrementing the product quantity in the wishlist"
-            + " then the product quantity should be successfully decremented")
-    @Test
-    public void ShoudBeReturnSuccessWhenDecrementProductOfWishlist() throws Exception {
-        var product = WishlistMock.getProduct(2);
-        var product2 = WishlistMock.getProduct(1);
-        product2.setProductId("12345");
-        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product, product2)));
-
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
-
-        wishlistService.removeProduct("123", "1234");
-
-        mockWishlist.getProducts().get(0).setQuantity(1);
-
-        verify(wishlistRepository, times(1)).save(mockWishlist);
+        verify(wishlistRepository, times(1)).removeProduct("123", "1234");
+        verify(wishlistRepository, times(0)).findById(any());
+        verify(wishlistRepository, times(0)).save(any());
     }
 
     @DisplayName("Given a valid user ID and non-existent product ID"
@@ -228,14 +509,12 @@ public class WishlistServiceTest {
             + " then a NotFoundException should be thrown")
     @Test
     public void ShoudBeReturnErrorWhenNotFoundProductInWishListOnRemove() throws Exception {
-        var product = WishlistMock.getProduct(1);
-        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product)));
-
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
+        when(wishlistRepository.removeProduct(anyString(), anyString())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(true);
 
-        assertThrowsExactly(NotFoundException.class, () -> wishlistService.removeProduct("123", "234"));
+        var exception = assertThrowsExactly(NotFoundException.class, () -> wishlistService.removeProduct("123", "234"));
 
-        verify(wishlistRepository, times(0)).save(any());
+        assertEquals("Product not found in wishlist!", exception.getMessage());
     }
 
     @DisplayName("Given a non-existent user ID"
@@ -243,32 +522,124 @@ public class WishlistServiceTest {
             + " then a NotFoundException should be thrown")
     @Test
     public void ShoudBeReturnErrorWhenNotUserWishListOnRemove() throws Exception {
+        when(wishlistRepository.removeProduct(anyString(), anyString())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(false);
 
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.empty());
+        var exception = assertThrowsExactly(NotFoundException.class, () -> wishlistService.removeProduct("123", "1234"));
 
-        assertThrowsExactly(NotFoundException.class, () -> wishlistService.removeProduct("123", "1234"));
-
-        verify(wishlistRepository, times(0)).save(any());
+        assertEquals("Wishlist not found to user: 123", exception.getMessage());
     }
 
     @DisplayName("Given a valid user ID and product request"
             + " when trying to increment the product quantity in the wishlist"
-            + " then the product quantity should be successfully incremented")
+            + " then the updated wishlist returned by the repository should be mapped to the response")
     @Test
     public void ShoudBeReturnSuccessWhenIncrementProductOfWishlist() throws Exception {
         var productDto = WishlistMock.getProductRequest(1);
 
-        var product = WishlistMock.getProduct(2);
+        var product = WishlistMock.getProduct(3);
         var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product)));
 
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
-        when(wishlistRepository.save(any())).thenReturn(mockWishlist);
+        when(wishlistRepository.addProduct(anyString(), any(), anyInt())).thenReturn(Optional.of(mockWishlist));
 
-        wishlistService.addProduct("123", productDto);
+        var wishlist = wishlistService.addProduct("123", productDto);
 
-        mockWishlist.getProducts().get(0).setQuantity(3);
+        assertEquals(3, wishlist.getProducts().get(0).getQuantity());
+        verify(wishlistRepository, times(1)).addProduct(eq("123"), any(), eq(maxItem));
+        verify(wishlistRepository, times(0)).findById(any());
+        verify(wishlistRepository, times(0)).save(any());
+    }
+
+    @DisplayName("Given a product in the wishlist"
+            + " when setting its quantity"
+            + " then the quantity should be updated in a single update")
+    @Test
+    public void ShoudBeReturnSuccessWhenSetProductQuantity() throws Exception {
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(WishlistMock.getProduct(5))));
+
+        when(wishlistRepository.updateProductQuantity(anyString(), anyString(), any(), any(), anyInt())).thenReturn(Optional.of(mockWishlist));
+
+        var wishlist = wishlistService.updateProductQuantity("123", "1234", new ProductQuantityRequest(5, null));
+
+        assertEquals(5, wishlist.getProducts().get(0).getQuantity());
+        verify(wishlistRepository, times(1)).updateProductQuantity("123", "1234", 5, null, maxItem);
+        verify(wishlistRepository, times(0)).existsById(any());
+    }
+
+    @DisplayName("Given a quantity above the maximum number of items"
+            + " when setting the product quantity"
+            + " then a MaxItemsException should be thrown without touching the database")
+    @Test
+    public void ShoudBeReturnErrorWhenSetQuantityExceedsMaxNumber() {
+        assertThrowsExactly(MaxItemsException.class,
+                () -> wishlistService.updateProductQuantity("123", "1234", new ProductQuantityRequest(maxItem + 1, null)));
+        verify(wishlistRepository, times(0)).updateProductQuantity(anyString(), anyString(), any(), any(), anyInt());
+    }
+
+    @DisplayName("Given a product that is not in the wishlist"
+            + " when changing its quantity"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenChangingQuantityOfNotFoundProduct() throws Exception {
+        when(wishlistRepository.updateProductQuantity(anyString(), anyString(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(true);
+        when(wishlistRepository.findByUserIdAndProductId(anyString(), anyString())).thenReturn(Optional.empty());
 
-        verify(wishlistRepository, times(1)).save(mockWishlist);
+        assertThrowsExactly(NotFoundException.class,
+                () -> wishlistService.updateProductQuantity("123", "1234", new ProductQuantityRequest(null, 2)));
+    }
+
+    @DisplayName("Given a wishlist without room for a higher quantity"
+            + " when changing the product quantity"
+            + " then a MaxItemsException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenDeltaExceedsMaxNumber() throws Exception {
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(WishlistMock.getProduct(1))));
+
+        when(wishlistRepository.updateProductQuantity(anyString(), anyString(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(true);
+        when(wishlistRepository.findByUserIdAndProductId(anyString(), anyString())).thenReturn(Optional.of(mockWishlist));
+
+        assertThrowsExactly(MaxItemsException.class,
+                () -> wishlistService.updateProductQuantity("123", "1234", new ProductQuantityRequest(null, maxItem)));
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when changing a product quantity"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenChangingQuantityOfNotFoundUser() throws Exception {
+        when(wishlistRepository.updateProductQuantity(anyString(), anyString(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(false);
+
+        assertThrowsExactly(NotFoundException.class,
+                () -> wishlistService.updateProductQuantity("123", "1234", new ProductQuantityRequest(0, null)));
+        verify(wishlistRepository, times(0)).findByUserIdAndProductId(any(), any());
+    }
+
+    @DisplayName("Given a wishlist with products"
+            + " when clearing it"
+            + " then all products should be removed in a single update")
+    @Test
+    public void ShoudBeReturnSuccessWhenClearProducts() throws Exception {
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>());
+
+        when(wishlistRepository.clearProducts(anyString())).thenReturn(Optional.of(mockWishlist));
+
+        wishlistService.clearProducts("123");
+
+        verify(wishlistRepository, times(1)).clearProducts("123");
+        verify(wishlistRepository, times(0)).save(any());
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when clearing the wishlist"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenClearingNotFoundUser() {
+        when(wishlistRepository.clearProducts(anyString())).thenReturn(Optional.empty());
+
+        assertThrowsExactly(NotFoundException.class, () -> wishlistService.clearProducts("123"));
     }
 
     @DisplayName("Given a valid user ID and product request with existing product ID"
@@ -280,14 +651,17 @@ public class WishlistServiceTest {
         productDto.setProductId("234");
 
         var product = WishlistMock.getProduct(1);
-        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product)));
+        var product2 = WishlistMock.getProduct(1);
+        product2.setProductId("234");
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product, product2)));
 
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
-        when(wishlistRepository.save(any())).thenReturn(mockWishlist);
+        when(wishlistRepository.addProduct(anyString(), any(), anyInt())).thenReturn(Optional.of(mockWishlist));
 
-        wishlistService.addProduct("123", productDto);
+        var wishlist = wishlistService.addProduct("123", productDto);
 
-        verify(wishlistRepository, times(1)).save(mockWishlist);
+        assertEquals(2, wishlist.getProducts().size());
+        verify(wishlistRepository, times(1)).addProduct(eq("123"), argThat(p -> p.getProductId().equals("234")), eq(maxItem));
+        verify(wishlistRepository, times(0)).existsById(any());
     }
 
     @DisplayName("Given a non-existent user ID"
@@ -297,11 +671,10 @@ public class WishlistServiceTest {
     public void ShoudBeReturnErrorWhenNotUserWishListOnAdd() throws Exception {
         var productDto = WishlistMock.getProductRequest(1);
 
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(wishlistRepository.addProduct(anyString(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(false);
 
         assertThrowsExactly(NotFoundException.class, () -> wishlistService.addProduct("123", productDto));
-
-        verify(wishlistRepository, times(0)).save(any());
     }
 
     @DisplayName("Given a valid user ID and product request with too many products"
@@ -312,13 +685,136 @@ public class WishlistServiceTest {
         var productDto = WishlistMock.getProductRequest(1);
         productDto.setProductId("234");
 
-        var product = WishlistMock.getProduct(20);
-        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(product)));
-
-        when(wishlistRepository.findById(anyString())).thenReturn(Optional.of(mockWishlist));
+        when(wishlistRepository.addProduct(anyString(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(true);
 
         assertThrowsExactly(MaxItemsException.class, () -> wishlistService.addProduct("123", productDto));
+    }
 
-        verify(wishlistRepository, times(0)).save(any());
+    @DisplayName("Given a batch with the same product ID more than once"
+            + " when adding the products to the wishlist"
+            + " then the duplicates should be merged into a single update")
+    @Test
+    public void ShoudBeMergeDuplicatesWhenAddProductsInBatch() throws Exception {
+        var productDto = WishlistMock.getProductRequest(1);
+        var productDto2 = WishlistMock.getProductRequest(2);
+        productDto2.setProductId("234");
+        var productDto3 = WishlistMock.getProductRequest(1);
+        var mockWishlist = WishlistMock.getWishlist(new ArrayList<>(List.of(WishlistMock.getProduct(1))));
+
+        when(wishlistRepository.addProducts(anyString(), any(), anyInt())).thenReturn(Optional.of(mockWishlist));
+
+        wishlistService.addProducts("123", List.of(productDto, productDto2, productDto3));
+
+        verify(wishlistRepository, times(1)).addProducts(eq("123"), argThat(products -> products.size() == 2
+                && products.get(0).getProductId().equals(productDto.getProductId())
+                && products.get(0).getQuantity() == 2
+                && products.get(1).getProductId().equals("234")
+                && products.get(1).getQuantity() == 2), eq(maxItem));
+        verify(wishlistRepository, times(0)).existsById(any());
+    }
+
+    @DisplayName("Given a batch whose quantities exceed the maximum number of items"
+            + " when adding the products to the wishlist"
+            + " then a MaxItemsException should be thrown without touching the database")
+    @Test
+    public void ShoudBeReturnErrorWhenBatchExceedsMaxNumber() {
+        var productDto = WishlistMock.getProductRequest(maxItem);
+        var productDto2 = WishlistMock.getProductRequest(1);
+        productDto2.setProductId("234");
+
+        assertThrowsExactly(MaxItemsException.class, () -> wishlistService.addProducts("123", List.of(productDto, productDto2)));
+        verify(wishlistRepository, times(0)).addProducts(anyString(), any(), anyInt());
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when trying to add a batch of products to the wishlist"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenNotUserWishListOnBatchAdd() throws Exception {
+        var productDto = WishlistMock.getProductRequest(1);
+
+        when(wishlistRepository.addProducts(anyString(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(false);
+
+        assertThrowsExactly(NotFoundException.class, () -> wishlistService.addProducts("123", List.of(productDto)));
+    }
+
+    @DisplayName("Given a wishlist without room for the batch"
+            + " when trying to add the products to the wishlist"
+            + " then a MaxItemsException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenMaxNumberExceedOnBatchAdd() throws Exception {
+        var productDto = WishlistMock.getProductRequest(1);
+
+        when(wishlistRepository.addProducts(anyString(), any(), anyInt())).thenReturn(Optional.empty());
+        when(wishlistRepository.existsById(anyString())).thenReturn(true);
+
+        assertThrowsExactly(MaxItemsException.class, () -> wishlistService.addProducts("123", List.of(productDto)));
+    }
+
+    @DisplayName("Given a wishlist already retrieved once"
+            + " when retrieving the wishlist again"
+            + " then it should be served from the cache")
+    @Test
+    public void ShoudBeReturnCachedWishlistOnSecondRetrieval() throws Exception {
+        var mockWishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+
+        when(wishlistRepository.findById(any())).thenReturn(Optional.of(mockWishlist));
+
+        wishlistService.getByUserId("123");
+        var wishlist = wishlistService.getByUserId("123");
+
+        assertEquals("123", wishlist.getUserId());
+        verify(wishlistRepository, times(1)).findById("123");
+        assertEquals(1, wishlistCache.stats().hitCount());
+        assertEquals(1, wishlistCache.stats().missCount());
+    }
+
+    @DisplayName("Given a cached wishlist"
+            + " when a product is added"
+            + " then the updated wishlist should be written through to the cache")
+    @Test
+    public void ShoudBeWriteThroughCacheOnAdd() throws Exception {
+        var cachedWishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(1)));
+        var updatedWishlist = WishlistMock.getWishlist(List.of(WishlistMock.getProduct(2)));
+        updatedWishlist.setVersion(1L);
+        wishlistCache.put(cachedWishlist);
+
+        when(wishlistRepository.addProduct(anyString(), any(), anyInt())).thenReturn(Optional.of(updatedWishlist));
+
+        wishlistService.addProduct("123", WishlistMock.getProductRequest(1));
+        var wishlist = wishlistService.getByUserId("123");
+
+        assertEquals(2, wishlist.getProducts().get(0).getQuantity());
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a wishlist that is not cached"
+            + " when checking which products are in the wishlist"
+            + " then the product ids should be loaded with one projected query")
+    @Test
+    public void ShoudBeReturnProductsMembershipFromProjection() throws Exception {
+        var product = WishlistMock.getProduct(1);
+        var mockWishlist = new Wishlist("123", null, null, List.of(product), null, null, null, null);
+
+        when(wishlistRepository.findProductIdsByUserId("123")).thenReturn(Optional.of(mockWishlist));
+
+        var response = wishlistService.containsProducts("123", List.of("999", "1234"));
+
+        assertEquals(List.of("999", "1234"), new ArrayList<>(response.getProducts().keySet()));
+        assertEquals(false, response.getProducts().get("999"));
+        assertEquals(true, response.getProducts().get("1234"));
+        verify(wishlistRepository, times(0)).findById(any());
+    }
+
+    @DisplayName("Given a non-existent user ID"
+            + " when checking which products are in the wishlist"
+            + " then a NotFoundException should be thrown")
+    @Test
+    public void ShoudBeReturnErrorWhenNotFoundUserOnContains() {
+        when(wishlistRepository.findProductIdsByUserId(anyString())).thenReturn(Optional.empty());
+
+        assertThrowsExactly(NotFoundException.class, () -> wishlistService.containsProducts("123", List.of("1234")));
     }
 }